@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * То же приложение с кэшем второго уровня и без него.
+ */
+@State(Scope.Benchmark)
+public class CachedApplication extends SeededApplication {
+    @Param({"false", "true"})
+    public boolean secondLevelCache;
+
+    @Override
+    protected boolean secondLevelCache() {
+        return secondLevelCache;
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг вместе с загрузкой ленивых связей и отзывов, которую он вызывает.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FilmMapperBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    @Benchmark
+    public Object toFilmDto(SeededApplication app, SqlStatements sql) {
+        long filmId = app.randomFilm();
+        return sql.count(app, () -> app.inTransaction(() ->
+                app.filmMapper.toFilmDto(app.entityManager().find(Film.class, filmId))));
+    }
+
+    @Benchmark
+    public Object toFilmDtoList(SeededApplication app, SqlStatements sql) {
+        long from = Math.max(1, app.randomFilm() - PAGE_SIZE);
+        return sql.count(app, () -> app.inTransaction(() -> app.filmMapper.toFilmDtoList(app.entityManager()
+                .createQuery("SELECT f FROM Film f WHERE f.id >= :from ORDER BY f.id", Film.class)
+                .setParameter("from", from)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList())));
+    }
+}
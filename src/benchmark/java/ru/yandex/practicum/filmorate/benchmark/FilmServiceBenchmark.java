@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Популярные фильмы из индекса в памяти против прежней выборки всех фильмов с сортировкой по числу лайков
+ * в памяти. Сравнение на 100 тыс. фильмов и 10 млн лайков:
+ * {@code -Dbenchmark.scale=100000 -Dbenchmark.args="-p likesPerUser=100 FilmServiceBenchmark"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FilmServiceBenchmark {
+    @Benchmark
+    public Object popularFilms(SeededApplication app, SqlStatements sql) {
+        return sql.count(app, () -> app.inTransaction(() -> app.filmService.getPopularFilms(10, null, null)));
+    }
+
+    @Benchmark
+    public Object popularFilmsByGenreAndYear(SeededApplication app, SqlStatements sql) {
+        return sql.count(app, () -> app.inTransaction(() -> app.filmService.getPopularFilms(10, 3L, 2000)));
+    }
+
+    @Benchmark
+    public Object legacyPopularFilms(SeededApplication app, SqlStatements sql) {
+        return sql.count(app, () -> app.inTransaction(() -> legacyPopularFilms(app, 10, null, null)));
+    }
+
+    @Benchmark
+    public Object legacyPopularFilmsByGenreAndYear(SeededApplication app, SqlStatements sql) {
+        return sql.count(app, () -> app.inTransaction(() -> legacyPopularFilms(app, 10, 3L, 2000)));
+    }
+
+    private static Object legacyPopularFilms(SeededApplication app, int count, Long genreId, Integer year) {
+        List<Film> films = app.entityManager().createQuery("SELECT f FROM Film f", Film.class)
+                .getResultList()
+                .stream()
+                .filter(film -> {
+                    if (genreId != null && film.getGenres().stream().noneMatch(g -> g.getId().equals(genreId))) {
+                        return false;
+                    }
+                    return year == null || film.getReleaseDate().getYear() == year;
+                })
+                .sorted(Comparator.comparingInt((Film film) -> film.getUsersWithLikes().size()).reversed())
+                .limit(count)
+                .toList();
+        return app.filmMapper.toFilmDtoList(films);
+    }
+}
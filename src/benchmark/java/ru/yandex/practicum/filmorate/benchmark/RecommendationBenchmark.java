@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекомендации из движка в памяти против прежнего SQL, искавшего одного самого похожего пользователя.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecommendationBenchmark {
+    private static final String LEGACY_SQL = """
+            SELECT f.*
+            FROM films f
+            JOIN likes l ON f.id = l.film_id
+            WHERE l.user_id IN (
+                SELECT max_common_id.user_id
+                FROM (
+                    SELECT l2.user_id, COUNT(*) AS count_common_likes
+                    FROM likes l1
+                    JOIN likes l2 ON l1.film_id = l2.film_id
+                    WHERE l1.user_id = :userId AND l2.user_id != :userId
+                    GROUP BY l2.user_id
+                    ORDER BY count_common_likes DESC
+                    LIMIT 1
+                ) AS max_common_id
+            )
+            AND f.id NOT IN (
+                SELECT l3.film_id
+                FROM likes l3
+                WHERE l3.user_id = :userId
+            )
+            """;
+
+    @Benchmark
+    public Object engine(SeededApplication app, SqlStatements sql) {
+        long userId = app.randomUser();
+        return sql.count(app, () -> app.inTransaction(() -> app.filmService.getRecommendations(userId)));
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object legacySql(SeededApplication app, SqlStatements sql) {
+        long userId = app.randomUser();
+        return sql.count(app, () -> app.inTransaction(() -> {
+            List<Film> films = app.entityManager().createNativeQuery(LEGACY_SQL, Film.class)
+                    .setParameter("userId", userId)
+                    .getResultList();
+            return app.filmMapper.toFilmDtoList(films);
+        }));
+    }
+}
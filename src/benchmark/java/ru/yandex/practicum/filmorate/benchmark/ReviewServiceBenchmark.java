@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReviewServiceBenchmark {
+    @Benchmark
+    public Object reviewsToFilm(SeededApplication app, SqlStatements sql) {
+        long filmId = app.randomFilm();
+        return sql.count(app, () -> app.inTransaction(() -> app.reviewService.getReviewsToFilm(filmId, 10)));
+    }
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение фильма по id из горячего набора, который целиком помещается в кэш второго уровня:
+ * при включённом кэше после прогрева это путь попадания.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SecondLevelCacheBenchmark {
+    private static final int HOT_FILMS = 100;
+
+    @Benchmark
+    public Object filmById(CachedApplication app, SqlStatements sql) {
+        long filmId = ThreadLocalRandom.current().nextLong(1, Math.min(app.scale, HOT_FILMS) + 1);
+        return sql.count(app, () -> app.inTransaction(() -> app.filmService.getFilmById(filmId)));
+    }
+}
@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.dataset.DatasetGenerator;
+import ru.yandex.practicum.filmorate.dataset.DatasetSpec;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReviewService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Приложение без веб-слоя на файловой H2, засеянной {@link DatasetGenerator}: {@code scale} пользователей
+ * и фильмов, в среднем {@code likesPerUser} лайков на пользователя, со степенным распределением лайков
+ * и друзей. База засевается один раз на параметры и версию генератора и переиспользуется следующими
+ * форками и прогонами.
+ * Вызовы выполняются в транзакции только для чтения — как запрос с открытой сессией в веб-слое.
+ */
+@State(Scope.Benchmark)
+public class SeededApplication {
+    @Param("10000")
+    public int scale;
+
+    @Param("10")
+    public int likesPerUser;
+
+    public FilmService filmService;
+    public FilmMapper filmMapper;
+    public ReviewService reviewService;
+    public UserService userService;
+
+    private ConfigurableApplicationContext context;
+    private EntityManagerFactory entityManagerFactory;
+    private TransactionTemplate transactions;
+    private Statistics statistics;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        Path directory = Path.of(System.getProperty("benchmark.db.dir", "target/benchmark-db")).toAbsolutePath();
+        Files.createDirectories(directory);
+        String name = "filmorate-%d-%d-v%d".formatted(scale, likesPerUser, DatasetGenerator.VERSION);
+        Path marker = directory.resolve(name + ".seeded");
+        boolean seeded = Files.exists(marker);
+        if (!seeded) {
+            Files.deleteIfExists(directory.resolve(name + ".mv.db"));
+            Files.deleteIfExists(directory.resolve(name + ".trace.db"));
+        }
+
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE);
+        // Аргументы командной строки перекрывают application.properties тестов, который тоже на classpath
+        context = builder.run(
+                "--spring.datasource.url=jdbc:h2:file:" + directory.resolve(name),
+                "--spring.sql.init.mode=" + (seeded ? "never" : "always"),
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.generate_statistics=true",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.zalando.logbook=WARN",
+                "--filmorate.cache.second-level.enabled=" + secondLevelCache());
+        if (!seeded) {
+            new DatasetGenerator(context.getBean(JdbcTemplate.class)).generate(DatasetSpec.builder()
+                    .users(scale)
+                    .films(scale)
+                    .likesPerUser(likesPerUser)
+                    .directors(Math.max(1, scale / 100))
+                    .events(false)
+                    .build());
+            // Индексы в памяти строятся при старте, а данные появились после него
+            context.publishEvent(new ApplicationReadyEvent(builder.application(), new String[0], context,
+                    Duration.ZERO));
+            Files.createFile(marker);
+        }
+
+        filmService = context.getBean(FilmService.class);
+        filmMapper = context.getBean(FilmMapper.class);
+        reviewService = context.getBean(ReviewService.class);
+        userService = context.getBean(UserService.class);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        transactions = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactions.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    protected boolean secondLevelCache() {
+        return false;
+    }
+
+    public <T> T inTransaction(Supplier<T> action) {
+        return transactions.execute(status -> action.get());
+    }
+
+    /**
+     * Менеджер сущностей текущей транзакции.
+     */
+    public EntityManager entityManager() {
+        return EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+    }
+
+    public long preparedStatements() {
+        return statistics.getPrepareStatementCount();
+    }
+
+    public long randomFilm() {
+        return ThreadLocalRandom.current().nextLong(1, scale + 1);
+    }
+
+    public long randomUser() {
+        return ThreadLocalRandom.current().nextLong(1, scale + 1);
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.function.Supplier;
+
+/**
+ * Число SQL-запросов, подготовленных Hibernate, как вторичная метрика бенчмарка. JMH публикует её
+ * в тех же единицах, что и пропускную способность: отношение {@code sqlStatements} к основной оценке —
+ * запросов на операцию. Запросы через {@code JdbcTemplate} Hibernate не видит и здесь не учитываются.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class SqlStatements {
+    public long sqlStatements;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        sqlStatements = 0;
+    }
+
+    <T> T count(SeededApplication application, Supplier<T> action) {
+        long before = application.preparedStatements();
+        T result = action.get();
+        sqlStatements += application.preparedStatements() - before;
+        return result;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserServiceBenchmark {
+    @Benchmark
+    public Object commonFriends(SeededApplication app, SqlStatements sql) {
+        long userId = app.randomUser();
+        long otherId = app.randomUser();
+        return sql.count(app, () -> app.inTransaction(() -> app.userService.getCommonFriends(userId, otherId)));
+    }
+}
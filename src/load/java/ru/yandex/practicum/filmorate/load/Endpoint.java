@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.load;
+
+import ru.yandex.practicum.filmorate.dataset.DatasetSpec;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.Random;
+
+/**
+ * Точки входа, которые воспроизводит нагрузочный прогон. Id выбираются равномерно среди сгенерированных.
+ */
+enum Endpoint {
+    POPULAR {
+        @Override
+        HttpRequest.Builder request(URI base, Random random, DatasetSpec spec) {
+            return get(base, "/films/popular?count=10");
+        }
+    },
+    FILM {
+        @Override
+        HttpRequest.Builder request(URI base, Random random, DatasetSpec spec) {
+            return get(base, "/films/" + film(random, spec));
+        }
+    },
+    LIKE {
+        @Override
+        HttpRequest.Builder request(URI base, Random random, DatasetSpec spec) {
+            String path = "/films/%d/like/%d".formatted(film(random, spec), user(random, spec));
+            return random.nextBoolean()
+                    ? builder(base, path).PUT(HttpRequest.BodyPublishers.noBody())
+                    : builder(base, path).DELETE();
+        }
+    },
+    FEED {
+        @Override
+        HttpRequest.Builder request(URI base, Random random, DatasetSpec spec) {
+            return get(base, "/users/%d/feed".formatted(user(random, spec)));
+        }
+    },
+    REVIEWS {
+        @Override
+        HttpRequest.Builder request(URI base, Random random, DatasetSpec spec) {
+            return get(base, "/reviews?filmId=%d&count=10".formatted(film(random, spec)));
+        }
+    },
+    SEARCH {
+        @Override
+        HttpRequest.Builder request(URI base, Random random, DatasetSpec spec) {
+            // Сгенерированные фильмы называются «Film <id>», поэтому число находит несколько фильмов
+            return get(base, "/films/search?query=%d&by=title".formatted(1 + random.nextInt(1000)));
+        }
+    };
+
+    abstract HttpRequest.Builder request(URI base, Random random, DatasetSpec spec);
+
+    String key() {
+        return name().toLowerCase();
+    }
+
+    private static HttpRequest.Builder get(URI base, String path) {
+        return builder(base, path).GET();
+    }
+
+    private static HttpRequest.Builder builder(URI base, String path) {
+        return HttpRequest.newBuilder(base.resolve(path));
+    }
+
+    private static int film(Random random, DatasetSpec spec) {
+        return 1 + random.nextInt(spec.getFilms());
+    }
+
+    private static int user(Random random, DatasetSpec spec) {
+        return 1 + random.nextInt(spec.getUsers());
+    }
+}
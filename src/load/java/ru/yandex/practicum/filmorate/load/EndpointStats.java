@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Задержки одной точки входа в микросекундах. Время ответа отсчитывается от запланированного момента
+ * отправки: если приложение или сам генератор отстали от расписания, ожидание в очереди входит в задержку
+ * и не прячется, как в замкнутом цикле (coordinated omission). Время обслуживания отсчитывается
+ * от фактической отправки и показывает, сколько из задержки приходится на очередь.
+ */
+final class EndpointStats {
+    private final String name;
+    private final Histogram responseTime = new ConcurrentHistogram(3);
+    private final Histogram serviceTime = new ConcurrentHistogram(3);
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param status код ответа или {@code -1}, если ответа не было
+     */
+    void record(long intendedNanos, long sentNanos, long completedNanos, int status) {
+        responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(completedNanos - intendedNanos));
+        serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(completedNanos - sentNanos));
+        if (status < 0) {
+            failures.increment();
+        } else if (status >= 500) {
+            serverErrors.increment();
+        } else if (status >= 400) {
+            clientErrors.increment();
+        } else {
+            successes.increment();
+        }
+    }
+
+    void add(EndpointStats other) {
+        responseTime.add(other.responseTime);
+        serviceTime.add(other.serviceTime);
+        successes.add(other.successes.sum());
+        clientErrors.add(other.clientErrors.sum());
+        serverErrors.add(other.serverErrors.sum());
+        failures.add(other.failures.sum());
+    }
+
+    static String header() {
+        return "%-10s %8s %6s %6s %6s %9s %9s %9s %9s %9s %9s".formatted("endpoint", "requests", "4xx", "5xx",
+                "failed", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99");
+    }
+
+    String summary() {
+        return "%-10s %8d %6d %6d %6d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f".formatted(name,
+                responseTime.getTotalCount(), clientErrors.sum(), serverErrors.sum(), failures.sum(),
+                millis(responseTime.getValueAtPercentile(50)), millis(responseTime.getValueAtPercentile(90)),
+                millis(responseTime.getValueAtPercentile(99)), millis(responseTime.getValueAtPercentile(99.9)),
+                millis(responseTime.getMaxValue()), millis(serviceTime.getValueAtPercentile(99)));
+    }
+
+    /**
+     * Полное распределение в формате {@code .hgrm}, который строит HdrHistogram Plotter.
+     */
+    void writePercentiles(Path directory) throws IOException {
+        write(directory.resolve(name + ".hgrm"), responseTime);
+        write(directory.resolve(name + ".service.hgrm"), serviceTime);
+    }
+
+    private static void write(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,230 @@
+package ru.yandex.practicum.filmorate.load;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.dataset.DatasetGenerator;
+import ru.yandex.practicum.filmorate.dataset.DatasetSpec;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный прогон с открытой моделью нагрузки: поднимает приложение на случайном порту и in-memory H2,
+ * заполняет базу {@link DatasetGenerator} и отправляет запросы по расписанию с заданной интенсивностью,
+ * не дожидаясь ответов на предыдущие. Медленный ответ не откладывает следующие запросы, поэтому очередь
+ * перед приложением видна в задержках. Расписание, выбор точек входа и id задаются зерном и воспроизводимы.
+ * <p>
+ * Параметры {@code --имя=значение}: {@code rate} (запросов в секунду), {@code duration} и {@code warmup}
+ * (секунды), {@code arrival} ({@code poisson} или {@code constant}), {@code mix} (веса точек входа вида
+ * {@code popular:20,film:30}), {@code timeout-ms}, {@code report-dir}, {@code seed}, {@code users},
+ * {@code films}. Остальные параметры передаются приложению, например {@code --filmorate.events.mode=OUTBOX}.
+ */
+public final class LoadHarness {
+    private static final String DEFAULT_MIX = "popular:20,film:30,like:15,feed:15,reviews:10,search:10";
+    private static final Set<String> HARNESS_OPTIONS = Set.of("rate", "duration", "warmup", "arrival", "mix",
+            "timeout-ms", "report-dir", "seed", "users", "films");
+
+    private final SimpleCommandLinePropertySource options;
+    private final DatasetSpec spec;
+    private final Random random;
+    private final Endpoint[] endpoints;
+    private final int[] cumulativeWeights;
+
+    private LoadHarness(SimpleCommandLinePropertySource options) {
+        this.options = options;
+        int films = Integer.parseInt(option("films", "10000"));
+        spec = DatasetSpec.builder()
+                .seed(Long.parseLong(option("seed", "42")))
+                .users(Integer.parseInt(option("users", "10000")))
+                .films(films)
+                .directors(Math.max(1, films / 100))
+                .build();
+        random = new Random(spec.getSeed());
+
+        Map<Endpoint, Integer> mix = parseMix(option("mix", DEFAULT_MIX));
+        endpoints = mix.keySet().toArray(Endpoint[]::new);
+        cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += mix.get(endpoints[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadHarness(new SimpleCommandLinePropertySource(args)).run();
+    }
+
+    private void run() throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(FilmorateApplication.class);
+        try (ConfigurableApplicationContext context = builder.run(applicationArgs())) {
+            System.out.printf("Генерация данных: %d пользователей, %d фильмов%n", spec.getUsers(), spec.getFilms());
+            new DatasetGenerator(context.getBean(JdbcTemplate.class)).generate(spec);
+            // Индексы в памяти строятся при старте, а данные появились после него
+            context.publishEvent(new ApplicationReadyEvent(builder.application(), new String[0], context,
+                    Duration.ZERO));
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+            Map<Endpoint, EndpointStats> stats = replay(URI.create("http://localhost:" + port));
+            report(stats, Path.of(option("report-dir", "target/load-report")));
+        }
+    }
+
+    private Map<Endpoint, EndpointStats> replay(URI base) throws Exception {
+        int rate = Integer.parseInt(option("rate", "200"));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("duration", "60")));
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("warmup", "10")));
+        boolean poisson = switch (option("arrival", "poisson")) {
+            case "poisson" -> true;
+            case "constant" -> false;
+            default -> throw new IllegalArgumentException("Параметр arrival принимает значения poisson и constant");
+        };
+        Duration timeout = Duration.ofMillis(Long.parseLong(option("timeout-ms", "30000")));
+        double intervalNanos = (double) TimeUnit.SECONDS.toNanos(1) / rate;
+
+        Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : endpoints) {
+            stats.put(endpoint, new EndpointStats(endpoint.key()));
+        }
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        long maxLagNanos = 0;
+        System.out.printf("Нагрузка: %d запросов/с (%s), прогрев %d с, измерение %d с%n", rate,
+                poisson ? "пуассоновский поток" : "равномерный поток", TimeUnit.NANOSECONDS.toSeconds(warmupNanos),
+                TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+
+        try (HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(timeout)
+                .build()) {
+            long start = System.nanoTime();
+            long measureFrom = start + warmupNanos;
+            long end = measureFrom + durationNanos;
+            double offset = 0;
+            while (true) {
+                long intended = start + (long) offset;
+                if (intended >= end) {
+                    break;
+                }
+                offset += poisson ? -Math.log(1 - random.nextDouble()) * intervalNanos : intervalNanos;
+                Endpoint endpoint = nextEndpoint();
+                HttpRequest request = endpoint.request(base, random, spec).timeout(timeout).build();
+
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                long sent = System.nanoTime();
+                maxLagNanos = Math.max(maxLagNanos, sent - intended);
+                EndpointStats endpointStats = intended >= measureFrom ? stats.get(endpoint) : null;
+                inFlight.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> {
+                            if (endpointStats != null) {
+                                endpointStats.record(intended, sent, System.nanoTime(),
+                                        response == null ? -1 : response.statusCode());
+                            }
+                        }));
+            }
+            try {
+                CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                        .exceptionally(error -> null)
+                        .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                System.out.println("Не все запросы завершились за timeout-ms, незавершённые не учтены");
+            }
+        }
+        if (maxLagNanos > TimeUnit.MILLISECONDS.toNanos(10)) {
+            System.out.printf("Генератор отставал от расписания до %.1f мс: задержки включают и его очередь%n",
+                    maxLagNanos / 1e6);
+        }
+        return stats;
+    }
+
+    private Endpoint nextEndpoint() {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = 0;
+        while (cumulativeWeights[index] <= value) {
+            index++;
+        }
+        return endpoints[index];
+    }
+
+    private static void report(Map<Endpoint, EndpointStats> stats, Path directory) throws Exception {
+        Files.createDirectories(directory);
+        EndpointStats all = new EndpointStats("all");
+        System.out.println(EndpointStats.header());
+        for (EndpointStats endpointStats : stats.values()) {
+            System.out.println(endpointStats.summary());
+            endpointStats.writePercentiles(directory);
+            all.add(endpointStats);
+        }
+        System.out.println(all.summary());
+        all.writePercentiles(directory);
+        System.out.println("Распределения задержек (.hgrm): " + directory.toAbsolutePath());
+    }
+
+    /**
+     * Аргументы командной строки перекрывают application.properties тестов, который тоже на classpath.
+     */
+    private String[] applicationArgs() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:filmorate-load;DB_CLOSE_DELAY=-1");
+        properties.put("spring.sql.init.mode", "always");
+        properties.put("spring.jpa.hibernate.ddl-auto", "none");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.properties.hibernate.generate_statistics", "false");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.org.hibernate.SQL", "WARN");
+        properties.put("logging.level.org.zalando.logbook", "WARN");
+        properties.put("filmorate.cache.second-level.enabled", "false");
+        for (String name : options.getPropertyNames()) {
+            if (!HARNESS_OPTIONS.contains(name)) {
+                properties.put(name, options.getProperty(name));
+            }
+        }
+        return properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            Endpoint endpoint = Arrays.stream(Endpoint.values())
+                    .filter(candidate -> candidate.key().equals(parts[0]))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Неизвестная точка входа в mix: " + parts[0]));
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            if (weight > 0) {
+                weights.put(endpoint, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("В mix нет ни одной точки входа с положительным весом");
+        }
+        return weights;
+    }
+
+    private String option(String name, String defaultValue) {
+        String value = options.getProperty(name);
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.monitoring.EntityLoadInterceptor;
+import ru.yandex.practicum.filmorate.monitoring.Endpoints;
+import ru.yandex.practicum.filmorate.monitoring.StatementCountingDataSource;
+
+import javax.sql.DataSource;
+import java.util.function.Function;
+
+/**
+ * Метрики сервисов и доступа к данным, публикуемые в {@code /actuator/prometheus}. Методы сервисов,
+ * помеченных {@code @Timed}, замеряются с гистограммой перцентилей и тегом точки входа;
+ * источник данных и сессии Hibernate дополняются счётчиками для {@code RequestMetricsFilter}.
+ */
+@Configuration
+public class MetricsConfig {
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        Function<ProceedingJoinPoint, Iterable<Tag>> tags = joinPoint -> {
+            Signature signature = joinPoint.getStaticPart().getSignature();
+            return Tags.of("class", signature.getDeclaringType().getSimpleName(),
+                    "method", signature.getName(),
+                    Endpoints.TAG, Endpoints.current());
+        };
+        return new TimedAspect(meterRegistry, tags);
+    }
+
+    @Bean
+    public static BeanPostProcessor statementCountingDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)) {
+                    return new StatementCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityLoadInterceptor() {
+        return properties -> properties.put(AvailableSettings.INTERCEPTOR, new EntityLoadInterceptor());
+    }
+}
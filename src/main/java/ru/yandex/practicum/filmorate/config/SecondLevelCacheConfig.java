@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.monitoring.CacheHitMeter;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * Кэш второго уровня Hibernate на JCache/Caffeine, включается свойством
+ * {@code filmorate.cache.second-level.enabled}. Регионы создаются заранее с ограничением размера
+ * и времени жизни; регион, не объявленный здесь, считается ошибкой конфигурации.
+ * Попадания, промахи и вытеснения публикуются в actuator как метрики {@code cache.*},
+ * доля попаданий по региону — как {@code filmorate.cache.hit.ratio}.
+ * <p>
+ * Найдя hibernate-jcache на classpath, Hibernate включает кэш сам, поэтому при выключенном свойстве
+ * он выключается явно.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+    public static final String FILMS = "films";
+    public static final String FILM_GENRES = "films.genres";
+    public static final String FILM_DIRECTORS = "films.directors";
+    public static final String DIRECTORS = "directors";
+    public static final String GENRES = "genres";
+    public static final String MPA = "mpa";
+    public static final String REVIEWS = "reviews";
+
+    private static final List<String> BOUNDED_REGIONS = List.of(FILMS, FILM_GENRES, FILM_DIRECTORS, DIRECTORS,
+            GENRES, MPA, REVIEWS, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.cache.second-level.enabled", havingValue = "false", matchIfMissing = true)
+    public HibernatePropertiesCustomizer secondLevelCacheDisabled() {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, false);
+        };
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "filmorate.cache.second-level.enabled", havingValue = "true")
+    static class Enabled {
+        @Bean(destroyMethod = "close")
+        public CacheManager hibernateCacheManager(
+                @Value("${filmorate.cache.second-level.maximum-size:10000}") long maximumSize,
+                @Value("${filmorate.cache.second-level.expire-after-write:10m}") Duration expireAfterWrite) {
+            CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                    .getCacheManager(URI.create("filmorate-hibernate"), getClass().getClassLoader());
+            for (String region : BOUNDED_REGIONS) {
+                createIfAbsent(cacheManager, region, configuration()
+                        .setMaximumSize(OptionalLong.of(maximumSize))
+                        .setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos())));
+            }
+            // Метки времени обновления таблиц нельзя вытеснять, иначе кэш запросов вернёт устаревший результат
+            createIfAbsent(cacheManager, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                    configuration());
+            return cacheManager;
+        }
+
+        @Bean
+        public HibernatePropertiesCustomizer secondLevelCacheProperties(CacheManager hibernateCacheManager) {
+            return properties -> {
+                properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+                properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+                properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+                properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+                properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            };
+        }
+
+        @Bean
+        public MeterBinder secondLevelCacheMetrics(CacheManager hibernateCacheManager) {
+            return registry -> {
+                for (String region : hibernateCacheManager.getCacheNames()) {
+                    JCacheMetrics.monitor(registry, hibernateCacheManager.getCache(region));
+                    Gauge.builder(CacheHitMeter.RATIO, registry, meters -> CacheHitMeter.ratio(
+                                    gets(meters, region, "hit"), gets(meters, region, "miss")))
+                            .description("Доля попаданий в кэш")
+                            .tag("cache", region)
+                            .register(registry);
+                }
+            };
+        }
+
+        private static double gets(MeterRegistry registry, String region, String result) {
+            FunctionCounter counter = registry.find("cache.gets").tags("cache", region, "result", result)
+                    .functionCounter();
+            return counter == null ? 0 : counter.count();
+        }
+
+        private static CaffeineConfiguration<Object, Object> configuration() {
+            return new CaffeineConfiguration<>()
+                    .setStoreByValue(false)
+                    .setStatisticsEnabled(true);
+        }
+
+        private static void createIfAbsent(CacheManager cacheManager, String region,
+                                           CaffeineConfiguration<Object, Object> configuration) {
+            if (cacheManager.getCache(region) == null) {
+                cacheManager.createCache(region, configuration);
+            }
+        }
+    }
+}
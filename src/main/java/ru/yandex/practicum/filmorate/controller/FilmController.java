@@ -2,15 +2,18 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.ChangeFilmDto;
 import ru.yandex.practicum.filmorate.dto.FilmResponseDto;
-import ru.yandex.practicum.filmorate.mapper.FilmMapper;
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.dto.LikeOperationDto;
+import ru.yandex.practicum.filmorate.dto.LikeResultDto;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeBatchService;
 
-import java.util.*;
+import java.util.List;
 
 @RestController
 @RequestMapping("/films")
@@ -18,11 +21,17 @@ import java.util.*;
 @Valid
 public class FilmController {
     private final FilmService filmService;
-    private final FilmMapper filmMapper;
+    private final LikeBatchService likeBatchService;
 
     @GetMapping
-    public ResponseEntity<List<FilmResponseDto>> getAllFilms() {
-        return filmService.getAllFilms();
+    public ResponseEntity<List<FilmResponseDto>> getAllFilms(@RequestParam(required = false) Long after,
+                                                             @RequestParam(required = false) Integer limit) {
+        return filmService.getAllFilms(after, limit);
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        return filmService.streamAllFilms();
     }
 
     @PostMapping
@@ -40,6 +49,11 @@ public class FilmController {
         return filmService.addLike(filmId, userId);
     }
 
+    @PostMapping("/likes")
+    public ResponseEntity<List<LikeResultDto>> applyLikes(@RequestBody List<LikeOperationDto> operations) {
+        return likeBatchService.applyLikes(operations);
+    }
+
     @DeleteMapping("/{filmId}/like/{userId}")
     public ResponseEntity<Void> deleteLike(@PathVariable Long filmId, @PathVariable Long userId) {
         return filmService.deleteLike(filmId, userId);
@@ -53,8 +67,10 @@ public class FilmController {
     }
 
     @GetMapping("/{filmId}")
-    public ResponseEntity<FilmResponseDto> getFilmById(@PathVariable Long filmId) {
-        return filmService.getFilmById(filmId);
+    public ResponseEntity<FilmResponseDto> getFilmById(@PathVariable Long filmId,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                               required = false) String ifNoneMatch) {
+        return filmService.getFilmById(filmId, ifNoneMatch);
     }
 
     @GetMapping("/director/{directorId}")
@@ -71,36 +87,17 @@ public class FilmController {
     }
 
     @GetMapping("/common")
-    public ResponseEntity<List<FilmResponseDto>> getCommonFilms(@RequestParam Long userId, @RequestParam Long friendId) {
-        return filmService.getCommonFilms(userId, friendId);
+    public ResponseEntity<List<FilmResponseDto>> getCommonFilms(@RequestParam Long userId, @RequestParam Long friendId,
+                                                                @RequestParam(required = false) Integer limit) {
+        return filmService.getCommonFilms(userId, friendId, limit);
     }
 
     @GetMapping("/search")
     public ResponseEntity<List<FilmResponseDto>> searchFilms(@RequestParam(name = "query") String query,
-                                                             @RequestParam(name = "by", defaultValue = "title") String by) {
-
-        List<Film> films;
-        List<String> searchBy = Arrays.asList(by.toLowerCase().split(","));
-
-        if (searchBy.contains("director") && searchBy.contains("title")) {
-            // Ищем по обоим полям
-            films = filmService.searchFilmsByTitleOrDirector(query);
-        } else if (searchBy.contains("director")) {
-            // Ищем только по режиссеру
-            films = filmService.searchFilmsByDirector(query);
-        } else if (searchBy.contains("title")) {
-            // Ищем только по названию
-            films = filmService.searchFilmsByTitle(query);
-        } else {
-            return ResponseEntity.badRequest().build();
-        }
-
-        List<Film> sortedFilms = films.stream()
-                .sorted(Comparator.comparing(Film::getId).reversed())
-                .toList();
-        List<FilmResponseDto> filmResponseDtos = sortedFilms.stream()
-                .map(filmMapper::toFilmDto)
-                .toList();
-        return ResponseEntity.ok().body(filmResponseDtos);
+                                                             @RequestParam(name = "by", defaultValue = "title") String by,
+                                                             @RequestParam(required = false) String sortBy,
+                                                             @RequestParam(defaultValue = "0") int offset,
+                                                             @RequestParam(required = false) Integer limit) {
+        return filmService.searchFilms(query, by, sortBy, offset, limit);
     }
 }
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.dto.ChangeReviewDto;
@@ -30,14 +31,17 @@ public class ReviewController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ReviewResponseDto> getReviewById(@PathVariable Long id) {
-        return reviewService.getReviewById(id);
+    public ResponseEntity<ReviewResponseDto> getReviewById(@PathVariable Long id,
+                                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                                   required = false) String ifNoneMatch) {
+        return reviewService.getReviewById(id, ifNoneMatch);
     }
 
     @GetMapping
     public ResponseEntity<Set<ReviewResponseDto>> getReviewsToFilm(@RequestParam(defaultValue = "10") int count,
-                                                                   @RequestParam(required = false) Long filmId) {
-        return reviewService.getReviewsToFilm(filmId, count);
+                                                                   @RequestParam(required = false) Long filmId,
+                                                                   @RequestParam(required = false) Long after) {
+        return reviewService.getReviewsToFilm(filmId, count, after);
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -2,8 +2,10 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.*;
 import ru.yandex.practicum.filmorate.service.UserService;
 
@@ -17,8 +19,14 @@ public class UserController {
     private final UserService userService;
 
     @GetMapping
-    public ResponseEntity<List<UserResponseDto>> getAllUsers() {
-        return userService.getAllUsers();
+    public ResponseEntity<List<UserResponseDto>> getAllUsers(@RequestParam(required = false) Long after,
+                                                             @RequestParam(required = false) Integer limit) {
+        return userService.getAllUsers(after, limit);
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        return userService.streamAllUsers();
     }
 
     @PostMapping
@@ -47,13 +55,16 @@ public class UserController {
     }
 
     @GetMapping("/{user1Id}/friends/common/{user2Id}")
-    public ResponseEntity<List<UserResponseDto>> getCommonFriends(@PathVariable Long user1Id, @PathVariable Long user2Id) {
-        return userService.getCommonFriends(user1Id, user2Id);
+    public ResponseEntity<List<UserResponseDto>> getCommonFriends(@PathVariable Long user1Id, @PathVariable Long user2Id,
+                                                                  @RequestParam(required = false) Integer limit) {
+        return userService.getCommonFriends(user1Id, user2Id, limit);
     }
 
     @GetMapping("/{userId}")
-    public ResponseEntity<UserResponseDto> gerUserById(@PathVariable Long userId) {
-        return userService.getUserById(userId);
+    public ResponseEntity<UserResponseDto> gerUserById(@PathVariable Long userId,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                               required = false) String ifNoneMatch) {
+        return userService.getUserById(userId, ifNoneMatch);
     }
 
     @GetMapping("/{userId}/recommendations")
@@ -68,7 +79,16 @@ public class UserController {
     }
 
     @GetMapping("/{userId}/feed")
-    public ResponseEntity<List<EventDto>> getEventFeed(@PathVariable Long userId) {
-        return userService.getUserEvents(userId);
+    public ResponseEntity<List<EventDto>> getEventFeed(@PathVariable Long userId,
+                                                       @RequestParam(required = false) Long after,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       @RequestParam(required = false) String order) {
+        return userService.getUserEvents(userId, after, limit, order);
+    }
+
+    @GetMapping("/{userId}/feed/friends")
+    public ResponseEntity<List<EventDto>> getFriendsFeed(@PathVariable Long userId,
+                                                         @RequestParam(required = false) Integer limit) {
+        return userService.getFriendsEvents(userId, limit);
     }
 }
@@ -0,0 +1,403 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
+
+import java.sql.Date;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Детерминированный генератор данных для нагрузочных тестов, бенчмарков и ручной проверки: заполняет
+ * пользователей, режиссёров, фильмы, дружбу, лайки, отзывы с оценками и ленту событий в схеме
+ * {@code schema.sql}. Одинаковые {@link DatasetSpec} дают одинаковые данные.
+ * <p>
+ * Популярность фильмов, пользователей и режиссёров распределена по закону Ципфа, число друзей, лайков
+ * и оценок на одного автора — по закону Парето: как в живых социальных графах, у немногих лидеров тысячи
+ * связей, у большинства — единицы. Строки пишутся пакетами JDBC, счётчики лайков и оценки отзывов
+ * вычисляются по сгенерированным строкам, а счётчики identity сдвигаются за последний id,
+ * чтобы приложение продолжило нумерацию. Таблица {@code friend_timeline} не заполняется:
+ * ленты друзей наполняются раздачей новых событий.
+ * <p>
+ * Запуск из командной строки:
+ * <pre>
+ * mvn compile exec:java -Dexec.mainClass=ru.yandex.practicum.filmorate.dataset.DatasetGenerator \
+ *     -Dexec.args="--url=jdbc:h2:file:./db/filmorate --init-schema --users=100000 --films=50000"
+ * </pre>
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DatasetGenerator {
+    /**
+     * Меняется вместе с алгоритмом генерации, чтобы не переиспользовать базу, засеянную прежней версией.
+     */
+    public static final int VERSION = 2;
+
+    private static final int BATCH_SIZE = 10_000;
+    // Показатель Парето для числа связей: при 2.5 среднее конечно, а хвост тяжёлый
+    private static final double PARETO_ALPHA = 2.5;
+    private static final int PICK_ATTEMPTS_PER_ID = 10;
+    private static final double LIKE_VOTE_SHARE = 0.7;
+    private static final int MAX_GENRES_PER_FILM = 3;
+    private static final LocalDate FIRST_BIRTHDAY = LocalDate.of(1950, 1, 1);
+    private static final LocalDate FIRST_RELEASE = LocalDate.of(1950, 1, 1);
+    private static final Instant FIRST_EVENT = Instant.parse("2020-01-01T00:00:00Z");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Заполняет пустую базу; справочники жанров и MPA должны быть уже загружены из {@code data.sql}.
+     */
+    public Summary generate(DatasetSpec spec) {
+        requireEmpty("users");
+        requireEmpty("films");
+        requireEmpty("directors");
+        long started = System.nanoTime();
+        Summary summary = new Run(spec).execute();
+        log.info("Сгенерирован набор данных за {} мс: {}", (System.nanoTime() - started) / 1_000_000, summary);
+        return summary;
+    }
+
+    /**
+     * Аргументы в виде {@code --имя=значение}: {@code url}, {@code username}, {@code password},
+     * {@code init-schema} (выполнить {@code schema.sql} и {@code data.sql}) и поля {@link DatasetSpec}
+     * через дефис: {@code seed}, {@code users}, {@code films}, {@code directors}, {@code friends-per-user},
+     * {@code likes-per-user}, {@code reviews-per-film}, {@code votes-per-review}, {@code zipf-exponent},
+     * {@code events}.
+     */
+    public static void main(String[] args) {
+        SimpleCommandLinePropertySource arguments = new SimpleCommandLinePropertySource(args);
+        // Одно соединение на весь прогон: файловая H2 закрывается и уплотняется с последним соединением
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                option(arguments, "url", "jdbc:h2:file:./db/filmorate"),
+                option(arguments, "username", "sa"),
+                option(arguments, "password", "password"), true);
+        if (arguments.containsProperty("init-schema")) {
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                    new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"));
+            populator.setSqlScriptEncoding("UTF-8");
+            populator.execute(dataSource);
+        }
+        DatasetSpec defaults = DatasetSpec.builder().build();
+        DatasetSpec spec = DatasetSpec.builder()
+                .seed(Long.parseLong(option(arguments, "seed", String.valueOf(defaults.getSeed()))))
+                .users(Integer.parseInt(option(arguments, "users", String.valueOf(defaults.getUsers()))))
+                .films(Integer.parseInt(option(arguments, "films", String.valueOf(defaults.getFilms()))))
+                .directors(Integer.parseInt(option(arguments, "directors", String.valueOf(defaults.getDirectors()))))
+                .friendsPerUser(Double.parseDouble(option(arguments, "friends-per-user",
+                        String.valueOf(defaults.getFriendsPerUser()))))
+                .likesPerUser(Double.parseDouble(option(arguments, "likes-per-user",
+                        String.valueOf(defaults.getLikesPerUser()))))
+                .reviewsPerFilm(Double.parseDouble(option(arguments, "reviews-per-film",
+                        String.valueOf(defaults.getReviewsPerFilm()))))
+                .votesPerReview(Double.parseDouble(option(arguments, "votes-per-review",
+                        String.valueOf(defaults.getVotesPerReview()))))
+                .zipfExponent(Double.parseDouble(option(arguments, "zipf-exponent",
+                        String.valueOf(defaults.getZipfExponent()))))
+                .events(Boolean.parseBoolean(option(arguments, "events", String.valueOf(defaults.isEvents()))))
+                .build();
+        try {
+            new DatasetGenerator(new JdbcTemplate(dataSource)).generate(spec);
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static String option(SimpleCommandLinePropertySource arguments, String name, String defaultValue) {
+        String value = arguments.getProperty(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private void requireEmpty(String table) {
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        if (rows != null && rows > 0) {
+            throw new IllegalStateException("Генератор заполняет только пустую базу, в таблице %s уже %d строк"
+                    .formatted(table, rows));
+        }
+    }
+
+    public record Summary(long users, long films, long directors, long friendships, long likes, long reviews,
+                          long reviewVotes, long events) {
+    }
+
+    /**
+     * Состояние одного прогона: генератор случайных чисел, распределения популярности и буферы вставки.
+     */
+    private final class Run {
+        private final DatasetSpec spec;
+        private final Random random;
+        private final Batch users = new Batch("""
+                INSERT INTO users (id, name, login, email, birthday)
+                VALUES (?, ?, ?, ?, ?)""");
+        private final Batch directors = new Batch("INSERT INTO directors (id, name) VALUES (?, ?)");
+        private final Batch films = new Batch("""
+                INSERT INTO films (id, name, description, release_date, duration, rating_id)
+                VALUES (?, ?, ?, ?, ?, ?)""");
+        private final Batch filmGenres = new Batch("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)");
+        private final Batch filmDirectors = new Batch(
+                "INSERT INTO film_directors (film_id, director_id) VALUES (?, ?)");
+        private final Batch friends = new Batch("INSERT INTO user_friends (user_id, friend_id) VALUES (?, ?)");
+        private final Batch likes = new Batch("INSERT INTO likes (film_id, user_id) VALUES (?, ?)");
+        private final Batch reviews = new Batch("""
+                INSERT INTO reviews (id, content, is_positive, film_id, user_id, useful)
+                VALUES (?, ?, ?, ?, ?, ?)""");
+        private final Batch reviewRatings = new Batch("INSERT INTO review_rating (id, review_id) VALUES (?, ?)");
+        private final Batch reviewLikes = new Batch("INSERT INTO review_likes (review_id, user_id) VALUES (?, ?)");
+        private final Batch reviewDislikes = new Batch(
+                "INSERT INTO review_dislikes (review_id, user_id) VALUES (?, ?)");
+        private final Batch events = new Batch("""
+                INSERT INTO events (event_id, user_id, event_type, operation, entity_id, timestamp)
+                VALUES (?, ?, ?, ?, ?, ?)""");
+        private long lastEventId;
+
+        Run(DatasetSpec spec) {
+            this.spec = spec;
+            this.random = new Random(spec.getSeed());
+        }
+
+        Summary execute() {
+            List<Long> genreIds = jdbcTemplate.queryForList("SELECT id FROM genres ORDER BY id", Long.class);
+            List<Long> mpaIds = jdbcTemplate.queryForList("SELECT id FROM mpa_rating ORDER BY id", Long.class);
+            if (genreIds.isEmpty() || mpaIds.isEmpty()) {
+                throw new IllegalStateException("Справочники жанров и MPA пусты, сначала выполните data.sql");
+            }
+
+            insertUsers();
+            insertDirectors();
+            insertFilms(genreIds, mpaIds);
+            insertFriendsAndLikes();
+            insertReviews();
+            restartIdentity("users", "id");
+            restartIdentity("films", "id");
+            restartIdentity("directors", "id");
+            restartIdentity("reviews", "id");
+            restartIdentity("review_rating", "id");
+            restartIdentity("events", "event_id");
+            return new Summary(users.written, films.written, directors.written, friends.written, likes.written,
+                    reviews.written, reviewLikes.written + reviewDislikes.written, events.written);
+        }
+
+        private void insertUsers() {
+            for (int id = 1; id <= spec.getUsers(); id++) {
+                users.add(id, "User " + id, "user" + id, "user" + id + "@example.com",
+                        Date.valueOf(FIRST_BIRTHDAY.plusDays(random.nextInt(20_000))));
+                users.flushIfFull();
+            }
+            users.flush();
+        }
+
+        private void insertDirectors() {
+            for (int id = 1; id <= spec.getDirectors(); id++) {
+                directors.add(id, "Director " + id);
+                directors.flushIfFull();
+            }
+            directors.flush();
+        }
+
+        private void insertFilms(List<Long> genreIds, List<Long> mpaIds) {
+            ZipfSampler prolificDirectors = spec.getDirectors() > 0
+                    ? new ZipfSampler(spec.getDirectors(), spec.getZipfExponent(), random)
+                    : null;
+            for (int id = 1; id <= spec.getFilms(); id++) {
+                films.add(id, "Film " + id, "Description " + id,
+                        Date.valueOf(FIRST_RELEASE.plusDays(random.nextInt(27_000))), 60 + random.nextInt(120),
+                        mpaIds.get(random.nextInt(mpaIds.size())));
+                int genres = 1 + random.nextInt(Math.min(MAX_GENRES_PER_FILM, genreIds.size()));
+                for (int genre : distinctIndexes(genres, genreIds.size())) {
+                    filmGenres.add(id, genreIds.get(genre));
+                }
+                if (prolificDirectors != null) {
+                    filmDirectors.add(id, prolificDirectors.next());
+                }
+                // Связи ссылаются на фильмы, поэтому фильмы сбрасываются первыми
+                if (films.isFull() || filmGenres.isFull() || filmDirectors.isFull()) {
+                    flush(films, filmGenres, filmDirectors);
+                }
+            }
+            flush(films, filmGenres, filmDirectors);
+        }
+
+        /**
+         * Число связей пользователя распределено по Парето, а цели выбираются по популярности,
+         * поэтому степенной закон выполняется и для исходящих, и для входящих связей.
+         */
+        private void insertFriendsAndLikes() {
+            ZipfSampler popularUsers = new ZipfSampler(spec.getUsers(), spec.getZipfExponent(), random);
+            ZipfSampler popularFilms = new ZipfSampler(spec.getFilms(), spec.getZipfExponent(), random);
+            int[] likesCount = new int[spec.getFilms() + 1];
+            for (int userId = 1; userId <= spec.getUsers(); userId++) {
+                for (int friendId : pickDistinct(paretoCount(spec.getFriendsPerUser()), popularUsers, userId)) {
+                    friends.add(userId, friendId);
+                    event(userId, EventType.FRIEND, friendId);
+                }
+                for (int filmId : pickDistinct(paretoCount(spec.getLikesPerUser()), popularFilms, 0)) {
+                    likes.add(filmId, userId);
+                    likesCount[filmId]++;
+                    event(userId, EventType.LIKE, filmId);
+                }
+                friends.flushIfFull();
+                likes.flushIfFull();
+                events.flushIfFull();
+            }
+            flush(friends, likes, events);
+
+            Batch counters = new Batch("UPDATE films SET likes_count = ? WHERE id = ?");
+            for (int filmId = 1; filmId <= spec.getFilms(); filmId++) {
+                if (likesCount[filmId] > 0) {
+                    counters.add(likesCount[filmId], filmId);
+                    counters.flushIfFull();
+                }
+            }
+            counters.flush();
+        }
+
+        /**
+         * Отзывы чаще пишут на популярные фильмы; полезность отзыва равна разнице лайков и дизлайков.
+         */
+        private void insertReviews() {
+            if (spec.getUsers() == 0 || spec.getFilms() == 0) {
+                return;
+            }
+            ZipfSampler popularFilms = new ZipfSampler(spec.getFilms(), spec.getZipfExponent(), random);
+            ZipfSampler activeUsers = new ZipfSampler(spec.getUsers(), spec.getZipfExponent(), random);
+            long count = Math.round(spec.getFilms() * spec.getReviewsPerFilm());
+            for (int reviewId = 1; reviewId <= count; reviewId++) {
+                int authorId = activeUsers.next();
+                int useful = 0;
+                for (int voterId : pickDistinct(paretoCount(spec.getVotesPerReview()), activeUsers, authorId)) {
+                    if (random.nextDouble() < LIKE_VOTE_SHARE) {
+                        reviewLikes.add(reviewId, voterId);
+                        useful++;
+                    } else {
+                        reviewDislikes.add(reviewId, voterId);
+                        useful--;
+                    }
+                }
+                reviews.add(reviewId, "Review " + reviewId, random.nextBoolean(), popularFilms.next(), authorId,
+                        useful);
+                reviewRatings.add(reviewId, reviewId);
+                event(authorId, EventType.REVIEW, reviewId);
+                // Оценки ссылаются на review_rating, а она — на отзывы
+                if (reviews.isFull() || reviewLikes.isFull() || reviewDislikes.isFull()) {
+                    flush(reviews, reviewRatings, reviewLikes, reviewDislikes, events);
+                }
+            }
+            flush(reviews, reviewRatings, reviewLikes, reviewDislikes, events);
+        }
+
+        private void event(long userId, EventType type, long entityId) {
+            if (!spec.isEvents()) {
+                return;
+            }
+            lastEventId++;
+            Instant timestamp = FIRST_EVENT.plusSeconds(lastEventId);
+            events.add(lastEventId, userId, type.name(), EventOperation.ADD.name(), entityId,
+                    new SqlParameterValue(Types.TIMESTAMP_WITH_TIMEZONE, timestamp.atOffset(ZoneOffset.UTC)));
+        }
+
+        /**
+         * Дискретное распределение Парето со средним около {@code mean}.
+         */
+        private int paretoCount(double mean) {
+            if (mean <= 0) {
+                return 0;
+            }
+            double minimum = mean * (PARETO_ALPHA - 1) / PARETO_ALPHA;
+            double value = minimum / Math.pow(1 - random.nextDouble(), 1 / PARETO_ALPHA);
+            return (int) Math.min(Integer.MAX_VALUE, Math.round(value));
+        }
+
+        /**
+         * Выбирает до {@code count} различных id по популярности, но не больше половины доступных: при таком
+         * ограничении равномерный добор после исчерпания попыток быстро находит свободные id.
+         */
+        private Set<Integer> pickDistinct(int count, ZipfSampler sampler, int excluded) {
+            int available = sampler.size() - (excluded > 0 ? 1 : 0);
+            int limit = Math.min(count, Math.max(available / 2, Math.min(available, 1)));
+            Set<Integer> picked = new LinkedHashSet<>();
+            for (int attempt = 0; picked.size() < limit && attempt < limit * PICK_ATTEMPTS_PER_ID; attempt++) {
+                int id = sampler.next();
+                if (id != excluded) {
+                    picked.add(id);
+                }
+            }
+            while (picked.size() < limit) {
+                int id = 1 + random.nextInt(sampler.size());
+                if (id != excluded) {
+                    picked.add(id);
+                }
+            }
+            return picked;
+        }
+
+        private Set<Integer> distinctIndexes(int count, int bound) {
+            Set<Integer> picked = new LinkedHashSet<>();
+            while (picked.size() < count) {
+                picked.add(random.nextInt(bound));
+            }
+            return picked;
+        }
+
+        private void flush(Batch... batches) {
+            for (Batch batch : batches) {
+                batch.flush();
+            }
+        }
+    }
+
+    /**
+     * Счётчик identity продолжает нумерацию за последним сгенерированным id: id задаются явно
+     * и сами по себе счётчик не сдвигают.
+     */
+    private void restartIdentity(String table, String column) {
+        Long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(%s), 0) + 1 FROM %s".formatted(column, table),
+                Long.class);
+        jdbcTemplate.execute("ALTER TABLE %s ALTER COLUMN %s RESTART WITH %d".formatted(table, column, next));
+    }
+
+    /**
+     * Буфер строк одной вставки, отправляемый пакетом JDBC.
+     */
+    private final class Batch {
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        private long written;
+
+        Batch(String sql) {
+            this.sql = sql;
+        }
+
+        void add(Object... row) {
+            rows.add(row);
+        }
+
+        boolean isFull() {
+            return rows.size() >= BATCH_SIZE;
+        }
+
+        void flushIfFull() {
+            if (isFull()) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(sql, rows);
+                written += rows.size();
+                rows.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Размер и форма генерируемого набора данных. Средние значения задают ожидаемое число связей на одного
+ * пользователя, фильм или отзыв; фактические значения распределены по степенному закону.
+ */
+@Value
+@Builder(toBuilder = true)
+public class DatasetSpec {
+    @Builder.Default
+    long seed = 42;
+
+    @Builder.Default
+    int users = 10_000;
+
+    @Builder.Default
+    int films = 10_000;
+
+    @Builder.Default
+    int directors = 100;
+
+    @Builder.Default
+    double friendsPerUser = 10;
+
+    @Builder.Default
+    double likesPerUser = 10;
+
+    @Builder.Default
+    double reviewsPerFilm = 1;
+
+    @Builder.Default
+    double votesPerReview = 2;
+
+    /**
+     * Показатель распределения Ципфа для популярности фильмов, пользователей и режиссёров:
+     * чем он больше, тем сильнее внимание сосредоточено на немногих лидерах.
+     */
+    @Builder.Default
+    double zipfExponent = 1.0;
+
+    /**
+     * Записывать ли в ленту событий добавление друзей, лайков и отзывов.
+     */
+    @Builder.Default
+    boolean events = true;
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Выбор id из {@code 1..n} по закону Ципфа: вероятность ранга {@code k} пропорциональна {@code 1 / k^s}.
+ * Ранги раздаются id в случайном порядке, чтобы популярность не совпадала с порядком вставки.
+ */
+final class ZipfSampler {
+    private final double[] cumulative;
+    private final int[] idByRank;
+    private final Random random;
+
+    ZipfSampler(int n, double exponent, Random random) {
+        this.random = random;
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+        idByRank = new int[n];
+        for (int rank = 0; rank < n; rank++) {
+            idByRank[rank] = rank + 1;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = idByRank[i];
+            idByRank[i] = idByRank[j];
+            idByRank[j] = swap;
+        }
+    }
+
+    int size() {
+        return idByRank.length;
+    }
+
+    int next() {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (rank < 0) {
+            rank = -rank - 1;
+        }
+        return idByRank[Math.min(rank, idByRank.length - 1)];
+    }
+}
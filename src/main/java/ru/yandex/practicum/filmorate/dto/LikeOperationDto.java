@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeOperationDto {
+    private Long filmId;
+    private Long userId;
+    private EventOperation op;
+}
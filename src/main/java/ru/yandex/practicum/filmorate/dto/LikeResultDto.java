@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+
+/**
+ * Результат одной операции пакета: {@code status} — HTTP-код, который вернул бы одиночный запрос,
+ * {@code message} заполняется только для отклонённых операций.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeResultDto {
+    private Long filmId;
+    private Long userId;
+    private EventOperation op;
+    private int status;
+    private String message;
+}
@@ -2,21 +2,33 @@ package ru.yandex.practicum.filmorate.error;
 
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.yandex.practicum.filmorate.exception.InternalServerErrorException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.User;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 @Slf4j
 @RestControllerAdvice
 @SuppressWarnings("unused")
 public class ErrorHandler {
+    // Сообщения совпадают с проверками в UserService: при гонке параллельных запросов их заменяет индекс
+    private static final Map<String, String> UNIQUE_CONSTRAINT_MESSAGES = Map.of(
+            User.EMAIL_KEY_CONSTRAINT, "Этот имейл уже используется",
+            User.LOGIN_KEY_CONSTRAINT, "Этот логин уже используется"
+    );
+
     @ExceptionHandler(ValidationException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorResponse handleIncorrectParameter(final ValidationException e) {
@@ -58,4 +70,21 @@ public class ErrorHandler {
         log.error("Ошибка с входным параметром.", e);
         return new ErrorResponse("Ошибка с входным параметром.", e.getMessage());
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ErrorResponse> handleDataIntegrityViolation(final DataIntegrityViolationException e) {
+        String cause = String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage()).toLowerCase(Locale.ROOT);
+        return UNIQUE_CONSTRAINT_MESSAGES.entrySet().stream()
+                .filter(entry -> cause.contains(entry.getKey()))
+                .findFirst()
+                .map(entry -> {
+                    log.error("Ошибка валидации.", e);
+                    return ResponseEntity.badRequest().body(new ErrorResponse("Ошибка валидации.", entry.getValue()));
+                })
+                .orElseGet(() -> {
+                    log.error("Ошибка сервера.", e);
+                    return ResponseEntity.internalServerError()
+                            .body(new ErrorResponse("Ошибка сервера.", "Нарушена целостность данных"));
+                });
+    }
+}
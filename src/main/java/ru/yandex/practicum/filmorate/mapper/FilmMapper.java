@@ -21,7 +21,9 @@ import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.DataGatewayService;
 
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -30,7 +32,6 @@ import java.util.stream.Collectors;
         GenreMapper.class,
         MpaMapper.class,
         DirectorMapper.class,
-        ReviewMapper.class,
         DataGatewayService.class
 })
 public abstract class FilmMapper {
@@ -38,24 +39,45 @@ public abstract class FilmMapper {
     @Autowired
     protected DataGatewayService dataGatewayService;
 
-    @Autowired
-    protected ReviewMapper reviewMapper;  // Для явного вызова в кастомных методах
-
     @Mapping(source = "userWithLikesId", target = "usersWithLikes", qualifiedByName = "mapUsersWithLikes")
     @Mapping(source = "mpa", target = "mpaRating", qualifiedByName = "mapMpaToEntity")
     @Mapping(source = "genres", target = "genres", qualifiedByName = "mapGenre")
     @Mapping(source = "directors", target = "directors", qualifiedByName = "mapDirector")
+    @Mapping(target = "likesCount", ignore = true)
     public abstract Film toEntity(ChangeFilmDto changeFilmDto);
 
 
-    @Mapping(target = "likes", expression = "java(film.getUsersWithLikes().size())")
+    @Mapping(source = "likesCount", target = "likes")
     @Mapping(source = "mpaRating", target = "mpa")
     @Mapping(source = "genres", target = "genres")
     @Mapping(source = "directors", target = "directors")
     @Mapping(source = "film", target = "reviews", qualifiedByName = "mapReview")
     public abstract FilmResponseDto toFilmDto(Film film);
 
-    public abstract List<FilmResponseDto> toFilmDtoList(List<Film> film);
+    @Named("toFilmDtoWithoutReviews")
+    @Mapping(source = "likesCount", target = "likes")
+    @Mapping(source = "mpaRating", target = "mpa")
+    @Mapping(target = "reviews", ignore = true)
+    abstract FilmResponseDto toFilmDtoWithoutReviews(Film film);
+
+    /**
+     * Пакетный маппинг: отзывы всех фильмов списка загружаются разом, а не по запросу на фильм.
+     */
+    public List<FilmResponseDto> toFilmDtoList(List<Film> films) {
+        if (films == null) {
+            return null;
+        }
+        Map<Long, Set<ReviewResponseDto>> reviews = dataGatewayService.findReviewsForFilms(films.stream()
+                .map(Film::getId)
+                .toList());
+        return films.stream()
+                .map(film -> {
+                    FilmResponseDto dto = toFilmDtoWithoutReviews(film);
+                    dto.setReviews(reviews.getOrDefault(film.getId(), new HashSet<>()));
+                    return dto;
+                })
+                .collect(Collectors.toList());
+    }
 
     @Named("mapMpaToEntity")
     Mpa mapMpaToEntity(@Nullable MpaDto mpa) {
@@ -85,9 +107,7 @@ public abstract class FilmMapper {
 
     @Named("mapReview")
     Set<ReviewResponseDto> mapReview(Film film) {
-        return dataGatewayService.findReviewsForFilm(film.getId())
-                .stream()
-                .map(reviewMapper::toReviewDto)
-                .collect(Collectors.toSet());
+        return dataGatewayService.findReviewsForFilms(List.of(film.getId()))
+                .getOrDefault(film.getId(), new HashSet<>());
     }
 }
@@ -13,22 +13,16 @@ public interface ReviewMapper {
 
     // Маппинг для создания нового отзыва
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "useful", ignore = true)
     @Mapping(target = "user", expression = "java(mapUser(dto.getUserId()))")
     @Mapping(target = "film", expression = "java(mapFilm(dto.getFilmId()))")
     Review toEntity(ChangeReviewDto dto);
 
     @Mapping(target = "reviewId", source = "id")
-    @Mapping(target = "useful", expression = "java(calculateUseful(review))")
     @Mapping(target = "userId", source = "user.id")
     @Mapping(target = "filmId", source = "film.id")
     ReviewResponseDto toReviewDto(Review review);
 
-    default int calculateUseful(Review review) {
-        if (review.getRating() == null) return 0;
-        return review.getRating().getUsersLikes().size() -
-                review.getRating().getUsersDislikes().size();
-    }
-
     default User mapUser(Long userId) {
         User user = new User();
         user.setId(userId);
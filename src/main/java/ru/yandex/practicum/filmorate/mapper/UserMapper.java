@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import ru.yandex.practicum.filmorate.dto.*;
 import ru.yandex.practicum.filmorate.model.User;
 
@@ -8,6 +9,8 @@ import java.util.List;
 
 @Mapper(componentModel = "spring")
 public interface UserMapper {
+    @Mapping(target = "emailKey", ignore = true)
+    @Mapping(target = "loginKey", ignore = true)
     User toEntity(ChangeUserDto changeUserDto);
 
     UserResponseDto toUserDto(User user);
@@ -3,6 +3,9 @@ package ru.yandex.practicum.filmorate.model;
 import jakarta.persistence.*;
 import jakarta.validation.Valid;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.yandex.practicum.filmorate.config.SecondLevelCacheConfig;
 
 import java.util.Objects;
 
@@ -13,6 +16,7 @@ import java.util.Objects;
 @Valid
 @NoArgsConstructor
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.DIRECTORS)
 @Table(name = "directors")
 public class Director {
     @Id
@@ -10,7 +10,7 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "events")
+@Table(name = "events", indexes = @Index(name = "idx_events_user_event", columnList = "user_id, event_id"))
 public class Event {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
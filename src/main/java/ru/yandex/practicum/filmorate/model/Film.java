@@ -7,6 +7,11 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import ru.yandex.practicum.filmorate.config.SecondLevelCacheConfig;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -18,6 +23,8 @@ import java.util.*;
 @Valid
 @NoArgsConstructor
 @Entity
+@DynamicUpdate
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.FILMS)
 @Table(name = "films")
 public class Film {
     @Id
@@ -44,7 +51,9 @@ public class Film {
     @JoinColumn(name = "rating_id")
     private Mpa mpaRating;
 
-    @ManyToMany(fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.FILM_DIRECTORS)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "film_directors",
             joinColumns = @JoinColumn(name = "film_id"),
@@ -52,6 +61,8 @@ public class Film {
     )
     private List<Director> directors = new ArrayList<>();
 
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.FILM_GENRES)
     @ManyToMany
     @JoinTable(
             name = "film_genres",
@@ -64,10 +75,15 @@ public class Film {
     @JoinTable(
             name = "likes",
             joinColumns = @JoinColumn(name = "film_id"),
-            inverseJoinColumns = @JoinColumn(name = "user_id")
+            inverseJoinColumns = @JoinColumn(name = "user_id"),
+            indexes = @Index(name = "idx_likes_user_film", columnList = "user_id, film_id")
     )
     private List<User> usersWithLikes = new ArrayList<>();
 
+    // Денормализованный счётчик лайков: меняется только атомарными запросами FilmRepository
+    @Column(name = "likes_count", nullable = false, updatable = false)
+    private Integer likesCount = 0;
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
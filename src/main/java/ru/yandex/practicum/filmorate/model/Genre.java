@@ -7,6 +7,10 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+import ru.yandex.practicum.filmorate.config.SecondLevelCacheConfig;
 
 import java.util.Objects;
 
@@ -16,6 +20,8 @@ import java.util.Objects;
 @Valid
 @NoArgsConstructor
 @Entity
+@Immutable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = SecondLevelCacheConfig.GENRES)
 @Table(name = "genres")
 public class Genre {
     @NotNull
@@ -7,6 +7,11 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+import ru.yandex.practicum.filmorate.config.SecondLevelCacheConfig;
 
 import java.util.Objects;
 
@@ -16,6 +21,9 @@ import java.util.Objects;
 @Valid
 @NoArgsConstructor
 @Entity
+@BatchSize(size = 100)
+@Immutable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = SecondLevelCacheConfig.MPA)
 @Table(name = "mpa_rating")
 public class Mpa {
     @NotNull
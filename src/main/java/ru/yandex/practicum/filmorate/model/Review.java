@@ -8,13 +8,20 @@ import jakarta.validation.constraints.Size;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.yandex.practicum.filmorate.config.SecondLevelCacheConfig;
 
 @Getter
 @Setter
 @NoArgsConstructor
 @Valid
 @Entity
-@Table(name = "reviews")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.REVIEWS)
+@Table(name = "reviews", indexes = {
+        @Index(name = "idx_reviews_film_useful", columnList = "film_id, useful DESC, id"),
+        @Index(name = "idx_reviews_useful", columnList = "useful DESC, id")
+})
 public class Review {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -31,6 +38,10 @@ public class Review {
     @NotNull
     private Boolean isPositive;
 
+    // Денормализованная полезность (лайки минус дизлайки): меняется только атомарными запросами ReviewRepository
+    @Column(name = "useful", nullable = false, updatable = false)
+    private Integer useful = 0;
+
     @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinColumn(name = "film_id")
     private Film film;
@@ -25,7 +25,7 @@ public class ReviewRating {
     @JoinColumn(name = "review_id")
     private Review review;
 
-    @OneToMany
+    @ManyToMany
     @JoinTable(
             name = "review_likes",
             joinColumns = @JoinColumn(name = "review_id"),
@@ -34,7 +34,7 @@ public class ReviewRating {
     @Builder.Default
     private Set<User> usersLikes = new HashSet<>();
 
-    @OneToMany
+    @ManyToMany
     @JoinTable(
             name = "review_dislikes",
             joinColumns = @JoinColumn(name = "review_id"),
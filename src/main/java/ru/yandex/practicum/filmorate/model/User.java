@@ -10,6 +10,8 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -20,32 +22,52 @@ import java.util.*;
 @Valid
 @NoArgsConstructor
 @Entity
-@Table(name = "users")
+@NamedEntityGraph(name = User.WITH_FRIENDS, attributeNodes = @NamedAttributeNode("friends"))
+@DynamicUpdate
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = User.EMAIL_KEY_CONSTRAINT, columnNames = "email_key"),
+        @UniqueConstraint(name = User.LOGIN_KEY_CONSTRAINT, columnNames = "login_key")
+})
 public class User {
+    public static final String WITH_FRIENDS = "User.friends";
+    public static final String EMAIL_KEY_CONSTRAINT = "uq_users_email_key";
+    public static final String LOGIN_KEY_CONSTRAINT = "uq_users_login_key";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @NotEmpty(message = "Это поле обязательно для заполнения")
     @Email(message = "Email является некорректным")
-    @Column(unique = true)
     private String email;
 
+    // Вычисляемые столбцы в нижнем регистре: на них построены регистронезависимые уникальные индексы
+    @Column(name = "email_key", insertable = false, updatable = false,
+            columnDefinition = "VARCHAR(100) GENERATED ALWAYS AS (LOWER(email))")
+    private String emailKey;
+
     @NotEmpty(message = "Это поле обязательно для заполнения")
     @Pattern(regexp = "^\\S*$", message = "Логин не должен содержать пробелы")
     @Column(nullable = false)
     private String login;
 
+    @Column(name = "login_key", insertable = false, updatable = false,
+            columnDefinition = "VARCHAR(50) GENERATED ALWAYS AS (LOWER(login))")
+    private String loginKey;
+
     private String name;
 
     @PastOrPresent(message = "Дата рождения не может быть в будущем")
     private LocalDate birthday;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Загружается лениво: там, где друзья нужны сразу, используется граф WITH_FRIENDS, для списков — пакетная загрузка
+    @ManyToMany
+    @BatchSize(size = 100)
     @JoinTable(
             name = "user_friends",
             joinColumns = @JoinColumn(name = "user_id"),
-            inverseJoinColumns = @JoinColumn(name = "friend_id")
+            inverseJoinColumns = @JoinColumn(name = "friend_id"),
+            indexes = @Index(name = "idx_user_friends_friend_user", columnList = "friend_id, user_id")
     )
     private Set<User> friends = new HashSet<>();
 
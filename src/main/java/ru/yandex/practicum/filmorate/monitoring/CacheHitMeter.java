@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Попадания и промахи кэша в памяти и их доля как датчик {@value RATIO}.
+ */
+public final class CacheHitMeter {
+    public static final String RATIO = "filmorate.cache.hit.ratio";
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public CacheHitMeter(MeterRegistry meterRegistry, String cache) {
+        hits = requests(meterRegistry, cache, "hit");
+        misses = requests(meterRegistry, cache, "miss");
+        Gauge.builder(RATIO, this, meter -> ratio(meter.hits.count(), meter.misses.count()))
+                .description("Доля попаданий в кэш")
+                .tag("cache", cache)
+                .register(meterRegistry);
+    }
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    /**
+     * Доля попаданий; до первого обращения не определена.
+     */
+    public static double ratio(double hits, double misses) {
+        double requests = hits + misses;
+        return requests == 0 ? Double.NaN : hits / requests;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String cache, String result) {
+        return Counter.builder("filmorate.cache.requests")
+                .description("Обращения к кэшу")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Тег {@code endpoint} для метрик: метод и шаблон пути обработчика, например {@code GET /films/{filmId}}.
+ * Шаблон вместо фактического пути не даёт id размножить временные ряды.
+ */
+public final class Endpoints {
+    public static final String TAG = "endpoint";
+    public static final String NONE = "none";
+
+    private Endpoints() {
+    }
+
+    /**
+     * Точка входа запроса, обрабатываемого текущим потоком, или {@value NONE} для фоновых задач
+     * и вызовов вне {@link RequestMetricsFilter}.
+     */
+    public static String current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (RequestStatistics.isRequestActive() && attributes instanceof ServletRequestAttributes servletAttributes) {
+            return of(servletAttributes.getRequest());
+        }
+        return NONE;
+    }
+
+    public static String of(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "UNMATCHED");
+    }
+}
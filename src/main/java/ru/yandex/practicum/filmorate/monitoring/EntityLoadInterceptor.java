@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import org.hibernate.Interceptor;
+import org.hibernate.type.Type;
+
+/**
+ * Считает сущности, загруженные Hibernate в рамках запроса, в том числе собранные из кэша второго уровня.
+ */
+public class EntityLoadInterceptor implements Interceptor {
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        RequestStatistics.entityLoaded();
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import java.time.Duration;
+
+/**
+ * Бюджет обращений к базе на один HTTP-запрос: число SQL-запросов, суммарное время в базе и число
+ * повторов одного и того же SQL. Незаданное поле бюджета точки входа берётся из бюджета по умолчанию.
+ */
+public record QueryBudget(Integer statements, Duration time, Integer repeats) {
+
+    QueryBudget orElse(QueryBudget defaults) {
+        return new QueryBudget(statements != null ? statements : defaults.statements(),
+                time != null ? time : defaults.time(),
+                repeats != null ? repeats : defaults.repeats());
+    }
+}
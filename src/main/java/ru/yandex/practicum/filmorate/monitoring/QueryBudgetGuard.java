@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверяет, уложился ли HTTP-запрос в бюджет обращений к базе, и пишет в лог превышения вместе с самыми
+ * частыми повторами SQL. Бюджет по умолчанию задаётся свойствами {@code filmorate.sql-budget.statements},
+ * {@code time} и {@code repeats}, для отдельной точки входа — например,
+ * {@code filmorate.sql-budget.endpoints[GET /films/popular].statements}.
+ * <p>
+ * При {@code filmorate.sql-budget.fail-on-violation=true} запрос, превысивший бюджет, завершается ошибкой.
+ * Ответ к этому моменту уже сформирован, поэтому режим предназначен для тестов.
+ */
+@Slf4j
+@Component
+public class QueryBudgetGuard {
+    private static final int LOGGED_STATEMENTS = 3;
+
+    private final QueryBudget defaults;
+    private final Map<String, QueryBudget> endpoints;
+    private final boolean failOnViolation;
+
+    public QueryBudgetGuard(Environment environment,
+                            @Value("${filmorate.sql-budget.statements:50}") int statements,
+                            @Value("${filmorate.sql-budget.time:500ms}") Duration time,
+                            @Value("${filmorate.sql-budget.repeats:10}") int repeats,
+                            @Value("${filmorate.sql-budget.fail-on-violation:false}") boolean failOnViolation) {
+        this.defaults = new QueryBudget(statements, time, repeats);
+        this.endpoints = Binder.get(environment)
+                .bind("filmorate.sql-budget.endpoints", Bindable.mapOf(String.class, QueryBudget.class))
+                .orElse(Map.of());
+        this.failOnViolation = failOnViolation;
+    }
+
+    public QueryBudget budget(String endpoint) {
+        QueryBudget budget = endpoints.get(endpoint);
+        return budget == null ? defaults : budget.orElse(defaults);
+    }
+
+    void check(String endpoint, RequestStatistics statistics) {
+        QueryBudget budget = budget(endpoint);
+        List<String> violations = new ArrayList<>();
+        if (statistics.getStatements() > budget.statements()) {
+            violations.add(String.format("SQL-запросов %d при бюджете %d",
+                    statistics.getStatements(), budget.statements()));
+        }
+        if (statistics.getStatementNanos() > budget.time().toNanos()) {
+            violations.add(String.format("время в базе %d мс при бюджете %d мс",
+                    TimeUnit.NANOSECONDS.toMillis(statistics.getStatementNanos()), budget.time().toMillis()));
+        }
+        if (statistics.getMaxRepeats() > budget.repeats()) {
+            violations.add(String.format("повторов одного SQL %d при бюджете %d, возможен N+1",
+                    statistics.getMaxRepeats(), budget.repeats()));
+        }
+        if (violations.isEmpty()) {
+            return;
+        }
+        String message = "Запрос " + endpoint + " превысил бюджет обращений к базе: " + String.join(", ", violations);
+        log.warn("{}. Частые SQL: {}", message, mostRepeated(statistics));
+        if (failOnViolation) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static String mostRepeated(RequestStatistics statistics) {
+        return statistics.getRepeatedStatements(2).entrySet().stream()
+                .limit(LOGGED_STATEMENTS)
+                .map(execution -> execution.getValue() + " × " + execution.getKey())
+                .toList()
+                .toString();
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Публикует по каждой точке входа распределения числа SQL-запросов, времени в базе и числа загруженных
+ * сущностей на один HTTP-запрос: видно, какие вызовы разворачиваются в сотни запросов.
+ * Распределения, а не датчики: датчик хранит только значение последнего запроса.
+ * Превышение бюджета обращений к базе проверяет {@link QueryBudgetGuard}.
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestMetricsFilter extends OncePerRequestFilter {
+    private final MeterRegistry meterRegistry;
+    private final QueryBudgetGuard queryBudgetGuard;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestStatistics statistics = RequestStatistics.beginRequest();
+        String endpoint;
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            statistics.end();
+            endpoint = Endpoints.of(request);
+            record(endpoint, statistics);
+        }
+        queryBudgetGuard.check(endpoint, statistics);
+    }
+
+    private void record(String endpoint, RequestStatistics statistics) {
+        DistributionSummary.builder("filmorate.request.sql.statements")
+                .description("SQL-запросы на один HTTP-запрос")
+                .baseUnit("statements")
+                .tag(Endpoints.TAG, endpoint)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statistics.getStatements());
+        Timer.builder("filmorate.request.sql.time")
+                .description("Время выполнения SQL за один HTTP-запрос")
+                .tag(Endpoints.TAG, endpoint)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statistics.getStatementNanos(), TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("filmorate.request.loaded.entities")
+                .description("Сущности, загруженные Hibernate за один HTTP-запрос")
+                .baseUnit("entities")
+                .tag(Endpoints.TAG, endpoint)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statistics.getEntitiesLoaded());
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Статистика обращений к базе в рамках текущего HTTP-запроса. Открывается {@link RequestMetricsFilter}
+ * и привязана к потоку запроса: запросы из фоновых потоков в неё не попадают.
+ * <p>
+ * Область, открытая {@link #begin()} вокруг нескольких HTTP-запросов (например, в тесте), суммирует SQL
+ * вложенных в неё запросов; обращения к базе вне HTTP-запроса она не учитывает. Выполнения считаются
+ * по тексту SQL, поэтому один подготовленный запрос с разными параметрами попадает в один счётчик —
+ * так видны N+1.
+ */
+public final class RequestStatistics {
+    private static final ThreadLocal<RequestStatistics> CURRENT = new ThreadLocal<>();
+
+    private final RequestStatistics parent;
+    private final boolean request;
+    private final Map<String, Integer> executions = new HashMap<>();
+    private int statements;
+    private long statementNanos;
+    private int entitiesLoaded;
+
+    private RequestStatistics(RequestStatistics parent, boolean request) {
+        this.parent = parent;
+        this.request = request;
+    }
+
+    /**
+     * Открывает область учёта в текущем потоке; закрывается {@link #end()} в том же потоке.
+     */
+    public static RequestStatistics begin() {
+        return begin(false);
+    }
+
+    static RequestStatistics beginRequest() {
+        return begin(true);
+    }
+
+    private static RequestStatistics begin(boolean request) {
+        RequestStatistics statistics = new RequestStatistics(CURRENT.get(), request);
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    public void end() {
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+
+    /**
+     * Обрабатывает ли текущий поток HTTP-запрос под {@link RequestMetricsFilter}.
+     */
+    static boolean isRequestActive() {
+        return innermostRequest() != null;
+    }
+
+    static void statementExecuted(String sql, long nanos) {
+        for (RequestStatistics scope = innermostRequest(); scope != null; scope = scope.parent) {
+            scope.statements++;
+            scope.statementNanos += nanos;
+            scope.executions.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    static void entityLoaded() {
+        for (RequestStatistics scope = innermostRequest(); scope != null; scope = scope.parent) {
+            scope.entitiesLoaded++;
+        }
+    }
+
+    private static RequestStatistics innermostRequest() {
+        RequestStatistics statistics = CURRENT.get();
+        while (statistics != null && !statistics.request) {
+            statistics = statistics.parent;
+        }
+        return statistics;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getStatementNanos() {
+        return statementNanos;
+    }
+
+    public int getEntitiesLoaded() {
+        return entitiesLoaded;
+    }
+
+    /**
+     * Наибольшее число выполнений одного и того же SQL.
+     */
+    public int getMaxRepeats() {
+        return executions.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    /**
+     * SQL, выполненные не менее {@code threshold} раз, от самых частых к редким.
+     */
+    public Map<String, Integer> getRepeatedStatements(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        executions.entrySet().stream()
+                .filter(execution -> execution.getValue() >= threshold)
+                .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()))
+                .forEach(execution -> repeated.put(execution.getKey(), execution.getValue()));
+        return repeated;
+    }
+}
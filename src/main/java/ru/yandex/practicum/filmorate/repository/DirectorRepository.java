@@ -1,6 +1,9 @@
 package ru.yandex.practicum.filmorate.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Director;
 
@@ -10,5 +13,7 @@ import java.util.List;
 public interface DirectorRepository extends JpaRepository<Director, Long> {
     boolean existsByName(String name);
 
-    List<Director> findByNameContainingIgnoreCase(String query);
-}
\ No newline at end of file
+    @Override
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
+    List<Director> findAll();
+}
@@ -1,12 +1,20 @@
 package ru.yandex.practicum.filmorate.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Event;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface EventRepository extends JpaRepository<Event, Long> {
     List<Event> findByUserIdOrderByEventIdAsc(Long userId);
+
+    List<Event> findByUserIdAndEventIdGreaterThanOrderByEventIdAsc(Long userId, Long eventId, Limit limit);
+
+    List<Event> findByUserIdAndEventIdLessThanOrderByEventIdDesc(Long userId, Long eventId, Limit limit);
+
+    List<Event> findByUserIdInOrderByEventIdDesc(Collection<Long> userIds, Limit limit);
 }
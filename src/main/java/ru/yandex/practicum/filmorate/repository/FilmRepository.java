@@ -1,56 +1,83 @@
 package ru.yandex.practicum.filmorate.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.List;
+import java.util.stream.Stream;
 
+/**
+ * Нативные изменения объявляют затронутые таблицы через {@link AvailableHints#HINT_NATIVE_SPACES}:
+ * иначе Hibernate сбрасывает после них весь кэш второго уровня. Изменения счётчика лайков объявляют
+ * только {@code likes}, чтобы не сбрасывать весь регион фильмов: изменённый фильм вытесняет
+ * {@link ru.yandex.practicum.filmorate.service.SecondLevelCacheEvictor}.
+ */
 @Repository
 public interface FilmRepository extends JpaRepository<Film, Long>, JpaSpecificationExecutor<Film> {
 
+    List<Film> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "100"))
+    @Query("SELECT f FROM Film f ORDER BY f.id")
+    Stream<Film> streamAll();
+
+    @Query(value = """
+            SELECT f.*
+            FROM likes l1
+            JOIN likes l2 ON l2.film_id = l1.film_id AND l2.user_id = :friendId
+            JOIN films f ON f.id = l1.film_id
+            WHERE l1.user_id = :userId
+            ORDER BY f.likes_count DESC, f.id
+            """, nativeQuery = true)
+    List<Film> findCommonFilms(@Param("userId") Long userId, @Param("friendId") Long friendId, Limit limit);
+
     /**
-     * Формируем таблицу max_common_id, в которой находим user_id пользователя с максимальным совпадением по лайкам.
-     * В первом условии получаем список фильмов, которые лайкнул найденный для рекомендации пользователь.
-     * Во втором условии исключаем из полученного списка фильмов те, которые лайкнул сам пользователь.
+     * Идемпотентно ставит лайк: строка вставляется, только если её ещё нет.
      *
-     * @param userId идентификатор обратившегося пользователя, для которого формируется список рекомендаций.
-     * @return список рекомендованных фильмов - тех, которые еще лайкнул обратившийся пользователь.
+     * @return 1, если лайк добавлен, 0 — если он уже был.
      */
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "likes"))
     @Query(value = """
-            SELECT f.*
-            FROM films f
-            JOIN likes l ON f.id = l.film_id
-            WHERE l.user_id IN (
-                SELECT max_common_id.user_id
-                FROM (
-                    SELECT l2.user_id, COUNT(*) AS count_common_likes
-                    FROM likes l1
-                    JOIN likes l2 ON l1.film_id = l2.film_id
-                    WHERE l1.user_id = :userId AND l2.user_id != :userId
-                    GROUP BY l2.user_id
-                    ORDER BY count_common_likes DESC
-                    LIMIT 1
-                ) AS max_common_id
-            )
-            AND f.id NOT IN (
-                SELECT l3.film_id
-                FROM likes l3
-                WHERE l3.user_id = :userId
-            )
+            MERGE INTO likes l
+            USING (VALUES (CAST(:filmId AS BIGINT), CAST(:userId AS BIGINT))) AS s(film_id, user_id)
+            ON l.film_id = s.film_id AND l.user_id = s.user_id
+            WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (s.film_id, s.user_id)
             """, nativeQuery = true)
-    List<Film> findRecommendations(@Param("userId") Long userId);
+    int insertLikeIfAbsent(@Param("filmId") Long filmId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "likes"))
+    @Query(value = "DELETE FROM likes WHERE film_id = :filmId AND user_id = :userId", nativeQuery = true)
+    int deleteLike(@Param("filmId") Long filmId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "likes"))
+    @Query(value = "DELETE FROM likes WHERE user_id = :userId", nativeQuery = true)
+    int deleteLikesByUserId(@Param("userId") Long userId);
 
-    List<Film> findByNameContainingIgnoreCase(String query);
+    @Query(value = "SELECT film_id FROM likes WHERE user_id = :userId", nativeQuery = true)
+    List<Long> findLikedFilmIds(@Param("userId") Long userId);
 
-    List<Film> findByDirectors_IdIn(List<Long> directorIds);
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "likes"))
+    @Query(value = "UPDATE films SET likes_count = likes_count + :delta WHERE id = :filmId", nativeQuery = true)
+    int changeLikesCount(@Param("filmId") Long filmId, @Param("delta") int delta);
 
-    @Query("SELECT DISTINCT f FROM Film f " +
-            "LEFT JOIN FETCH f.directors d " +
-            "WHERE (LOWER(f.name) LIKE LOWER(CONCAT('%', :query, '%')) " +
-            "OR LOWER(d.name) LIKE LOWER(CONCAT('%', :query, '%')))")
-    List<Film> searchFilmsByTitleOrDirectorName(@Param("query") String query);
-}
\ No newline at end of file
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "likes"))
+    @Query(value = """
+            UPDATE films SET likes_count = likes_count - 1
+            WHERE id IN (SELECT film_id FROM likes WHERE user_id = :userId)
+            """, nativeQuery = true)
+    int decrementLikesCountForUser(@Param("userId") Long userId);
+}
@@ -1,6 +1,12 @@
 package ru.yandex.practicum.filmorate.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.ReviewRating;
 
@@ -9,4 +15,46 @@ import java.util.Optional;
 @Repository
 public interface ReviewRatingRepository extends JpaRepository<ReviewRating, Long> {
     Optional<ReviewRating> findByReviewId(Long reviewId);
+
+    /**
+     * Голоса хранятся по идентификатору review_rating, поэтому он находится подзапросом по отзыву.
+     * Каждый метод — один INSERT или DELETE без загрузки множеств проголосовавших.
+     *
+     * @return число вставленных или удалённых строк (0 или 1).
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "review_likes"))
+    @Query(value = """
+            INSERT INTO review_likes (review_id, user_id)
+            SELECT rr.id, :userId FROM review_rating rr
+            WHERE rr.review_id = :reviewId
+              AND NOT EXISTS (SELECT 1 FROM review_likes l WHERE l.review_id = rr.id AND l.user_id = :userId)
+            """, nativeQuery = true)
+    int insertLike(@Param("reviewId") Long reviewId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "review_dislikes"))
+    @Query(value = """
+            INSERT INTO review_dislikes (review_id, user_id)
+            SELECT rr.id, :userId FROM review_rating rr
+            WHERE rr.review_id = :reviewId
+              AND NOT EXISTS (SELECT 1 FROM review_dislikes d WHERE d.review_id = rr.id AND d.user_id = :userId)
+            """, nativeQuery = true)
+    int insertDislike(@Param("reviewId") Long reviewId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "review_likes"))
+    @Query(value = """
+            DELETE FROM review_likes
+            WHERE user_id = :userId AND review_id IN (SELECT id FROM review_rating WHERE review_id = :reviewId)
+            """, nativeQuery = true)
+    int deleteLike(@Param("reviewId") Long reviewId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "review_dislikes"))
+    @Query(value = """
+            DELETE FROM review_dislikes
+            WHERE user_id = :userId AND review_id IN (SELECT id FROM review_rating WHERE review_id = :reviewId)
+            """, nativeQuery = true)
+    int deleteDislike(@Param("reviewId") Long reviewId, @Param("userId") Long userId);
 }
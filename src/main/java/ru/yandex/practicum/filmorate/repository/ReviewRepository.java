@@ -1,12 +1,27 @@
 package ru.yandex.practicum.filmorate.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dto.ReviewResponseDto;
 import ru.yandex.practicum.filmorate.model.Review;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+/**
+ * Изменения полезности объявляют пространство {@code review_rating}, а не {@code reviews}: иначе Hibernate
+ * сбрасывал бы весь регион отзывов на каждый голос. Изменённые отзывы вытесняет
+ * {@link ru.yandex.practicum.filmorate.service.SecondLevelCacheEvictor}.
+ */
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Long> {
     Optional<Review> findByUserIdAndFilmId(Long userId, Long filmId);
@@ -14,4 +29,57 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     Optional<Set<Review>> findAllByFilmId(Long filmId);
 
     boolean existsByUserIdAndFilmId(Long userId, Long filmId);
-}
\ No newline at end of file
+
+    /**
+     * Отзывы нескольких фильмов без загрузки связанных пользователей и фильмов.
+     */
+    @Query("SELECT new ru.yandex.practicum.filmorate.dto.ReviewResponseDto(" +
+            "r.id, r.content, r.isPositive, r.useful, r.user.id, r.film.id) " +
+            "FROM Review r WHERE r.film.id IN :filmIds")
+    List<ReviewResponseDto> findDtosByFilmIds(@Param("filmIds") Collection<Long> filmIds);
+
+    /**
+     * Самые полезные отзывы фильма, начиная после курсора (useful, id) в порядке useful DESC, id.
+     */
+    @Query("SELECT new ru.yandex.practicum.filmorate.dto.ReviewResponseDto(" +
+            "r.id, r.content, r.isPositive, r.useful, r.user.id, r.film.id) " +
+            "FROM Review r WHERE r.film.id = :filmId " +
+            "AND (r.useful < :useful OR (r.useful = :useful AND r.id > :id)) " +
+            "ORDER BY r.useful DESC, r.id")
+    List<ReviewResponseDto> findTopDtosByFilmId(@Param("filmId") Long filmId, @Param("useful") int useful,
+                                                @Param("id") long id, Limit limit);
+
+    @Query("SELECT new ru.yandex.practicum.filmorate.dto.ReviewResponseDto(" +
+            "r.id, r.content, r.isPositive, r.useful, r.user.id, r.film.id) " +
+            "FROM Review r WHERE r.useful < :useful OR (r.useful = :useful AND r.id > :id) " +
+            "ORDER BY r.useful DESC, r.id")
+    List<ReviewResponseDto> findTopDtos(@Param("useful") int useful, @Param("id") long id, Limit limit);
+
+    @Query("SELECT r.useful FROM Review r WHERE r.id = :id")
+    Optional<Integer> findUsefulById(@Param("id") Long id);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "review_rating"))
+    @Query(value = "UPDATE reviews SET useful = useful + :delta WHERE id = :reviewId", nativeQuery = true)
+    int changeUseful(@Param("reviewId") Long reviewId, @Param("delta") int delta);
+
+    /**
+     * Снимает голоса пользователя с полезности отзывов перед его удалением: строки голосов удалит каскад
+     * в базе, а полезность хранится в отзыве и сама не пересчитывается.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "review_rating"))
+    @Query(value = """
+            UPDATE reviews r SET useful = useful
+                - (SELECT COUNT(*) FROM review_likes l JOIN review_rating rr ON rr.id = l.review_id
+                   WHERE rr.review_id = r.id AND l.user_id = :userId)
+                + (SELECT COUNT(*) FROM review_dislikes d JOIN review_rating rr ON rr.id = d.review_id
+                   WHERE rr.review_id = r.id AND d.user_id = :userId)
+            WHERE r.id IN (SELECT rr.review_id FROM review_rating rr
+                           JOIN review_likes l ON l.review_id = rr.id WHERE l.user_id = :userId
+                           UNION
+                           SELECT rr.review_id FROM review_rating rr
+                           JOIN review_dislikes d ON d.review_id = rr.id WHERE d.user_id = :userId)
+            """, nativeQuery = true)
+    int revokeVotesOfUser(@Param("userId") Long userId);
+}
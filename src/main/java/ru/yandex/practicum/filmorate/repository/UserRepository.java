@@ -1,15 +1,54 @@
 package ru.yandex.practicum.filmorate.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    @EntityGraph(User.WITH_FRIENDS)
+    Optional<User> findWithFriendsById(Long id);
+
+    @Query(value = """
+            SELECT u.*
+            FROM user_friends f1
+            JOIN user_friends f2 ON f2.friend_id = f1.friend_id AND f2.user_id = :otherId
+            JOIN users u ON u.id = f1.friend_id
+            WHERE f1.user_id = :userId
+            ORDER BY u.id
+            """, nativeQuery = true)
+    List<User> findCommonFriends(@Param("userId") Long userId, @Param("otherId") Long otherId, Limit limit);
+
     @Query("SELECT u FROM User u JOIN u.friends f WHERE f.id = :friendId")
     Set<User> findUsersWhoAddedAsFriend(@Param("friendId") Long friendId);
+
+    @Query("SELECT COUNT(u) > 0 FROM User u WHERE u.emailKey = LOWER(:email)")
+    boolean existsByEmailIgnoreCase(@Param("email") String email);
+
+    @Query("SELECT COUNT(u) > 0 FROM User u WHERE u.emailKey = LOWER(:email) AND u.id <> :id")
+    boolean existsByEmailIgnoreCaseAndIdNot(@Param("email") String email, @Param("id") Long id);
+
+    @Query("SELECT COUNT(u) > 0 FROM User u WHERE u.loginKey = LOWER(:login)")
+    boolean existsByLoginIgnoreCase(@Param("login") String login);
+
+    @Query("SELECT COUNT(u) > 0 FROM User u WHERE u.loginKey = LOWER(:login) AND u.id <> :id")
+    boolean existsByLoginIgnoreCaseAndIdNot(@Param("login") String login, @Param("id") Long id);
+
+    List<User> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "100"))
+    @Query("SELECT u FROM User u ORDER BY u.id")
+    Stream<User> streamAll();
 }
@@ -2,42 +2,38 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.ReviewResponseDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
-import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.repository.DirectorRepository;
-import ru.yandex.practicum.filmorate.repository.GenreRepository;
-import ru.yandex.practicum.filmorate.repository.MpaRepository;
 import ru.yandex.practicum.filmorate.repository.ReviewRepository;
 import ru.yandex.practicum.filmorate.repository.UserRepository;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class DataGatewayService {
-    private final MpaRepository mpaRepository;
-    private final GenreRepository genreRepository;
-    private final DirectorRepository directorRepository;
+    private final ReferenceDataCache referenceData;
     private final UserRepository userRepository;
     private final ReviewRepository reviewRepository;
 
+    // Ограничивает размер IN-списка в одном запросе
+    private static final int IN_CLAUSE_CHUNK = 1000;
+
     public Mpa findMpaOrNull(Long id) {
-        return id != null ? mpaRepository.findById(id).orElse(null) : null;
+        return referenceData.findMpa(id).orElse(null);
     }
 
     public Genre findGenreOrNull(Long id) {
-        return id != null ? genreRepository.findById(id).orElse(null) : null;
+        return referenceData.findGenre(id).orElse(null);
     }
 
     public Director findDirectorOrThrow(Long id) {
-        return directorRepository.findById(id)
+        return referenceData.findDirector(id)
                 .orElseThrow(() -> new NotFoundException("Режиссёр с ID " + id + " не найден"));
     }
 
@@ -47,7 +43,19 @@ public class DataGatewayService {
                 : new ArrayList<>();
     }
 
-    public Set<Review> findReviewsForFilm(Long filmId) {
-        return reviewRepository.findAllByFilmId(filmId).orElse(new HashSet<>());
+    /**
+     * Загружает отзывы сразу для всех переданных фильмов: один запрос на каждую порцию идентификаторов.
+     *
+     * @return отзывы, сгруппированные по идентификатору фильма.
+     */
+    public Map<Long, Set<ReviewResponseDto>> findReviewsForFilms(List<Long> filmIds) {
+        Map<Long, Set<ReviewResponseDto>> reviews = new HashMap<>();
+        for (int from = 0; from < filmIds.size(); from += IN_CLAUSE_CHUNK) {
+            List<Long> chunk = filmIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK, filmIds.size()));
+            reviewRepository.findDtosByFilmIds(chunk).stream()
+                    .collect(Collectors.groupingBy(ReviewResponseDto::getFilmId, Collectors.toSet()))
+                    .forEach(reviews::put);
+        }
+        return reviews;
     }
 }
\ No newline at end of file
@@ -21,6 +21,10 @@ import java.util.List;
 public class DirectorService {
     private final DirectorRepository directorRepository;
     private final DirectorMapper directorMapper;
+    private final FilmSearchIndex searchIndex;
+    private final ReferenceDataCache referenceData;
+    private final SecondLevelCacheEvictor cacheEvictor;
+    private final ResourceVersions versions;
 
     public ResponseEntity<List<DirectorDto>> getAllDirectors() {
         log.debug("Запрос всех режиссеров");
@@ -33,7 +37,7 @@ public class DirectorService {
 
     public ResponseEntity<DirectorDto> getDirectorById(Long id) {
         log.debug("Запрос режиссера с ID: {}", id);
-        Director director = directorRepository.findById(id)
+        Director director = referenceData.findDirector(id)
                 .orElseThrow(() -> new NotFoundException("Режиссер с ID %s не найден".formatted(id)));
         String name = director.getName();
         log.info("Найден режиссер: ID={}, Имя={}", id, name);
@@ -49,6 +53,7 @@ public class DirectorService {
         }
         Director entity = directorMapper.toEntity(director);
         directorRepository.save(entity);
+        searchIndex.putDirector(entity.getId(), entity.getName());
         log.info("Режиссер успешно добавлен: ID={}, Имя={}", entity.getId(), entity.getName());
         return ResponseEntity.status(HttpStatus.CREATED).body(directorMapper.toDirectorDto(entity));
     }
@@ -69,13 +74,22 @@ public class DirectorService {
         }
 
         directorRepository.save(existingDirector);
+        versions.directorChanged(existingDirector.getId());
+        referenceData.evictDirector(existingDirector.getId());
+        searchIndex.putDirector(existingDirector.getId(), existingDirector.getName());
         log.info("Режиссер успешно обновлен: ID={}", director.getId());
         return ResponseEntity.ok().body(directorMapper.toDirectorDto(existingDirector));
     }
 
+    @Transactional
     public ResponseEntity<Void> deleteDirector(Long id) {
         log.debug("Попытка удалить режиссера ID={}", id);
+        versions.directorChanged(id);
         directorRepository.deleteById(id);
+        referenceData.evictDirector(id);
+        // Связи фильмов с режиссёром удаляются каскадом в базе
+        cacheEvictor.evictFilmDirectors();
+        searchIndex.removeDirector(id);
         log.info("Режиссер успешно удален: ID={}", id);
         return ResponseEntity.noContent().build();
     }
@@ -1,6 +1,6 @@
 package ru.yandex.practicum.filmorate.service;
 
-import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,11 +15,13 @@ import java.util.List;
 @Slf4j
 @RequiredArgsConstructor
 @Service
+@Timed(value = "filmorate.service", histogram = true)
 public class EventService {
     private final EventRepository repository;
     private final EventMapper mapper;
+    private final EventWriter eventWriter;
+    private final FriendTimeline friendTimeline;
 
-    @Transactional
     public void createEvent(Long userId, EventType eventType, EventOperation operation, Long entityId) {
         Event event = Event.builder()
                 .userId(userId)
@@ -28,11 +30,13 @@ public class EventService {
                 .entityId(entityId)
                 .timestamp(Instant.now())
                 .build();
-        repository.save(event);
-        log.debug("Добавлено событие {} для пользователя {}", event.getEventId(), userId);
+        eventWriter.write(event);
+        log.debug("Событие {} {} для пользователя {} передано на запись", eventType, operation, userId);
     }
 
     public List<EventDto> getEvents(Long userId) {
+        // Лента должна видеть все события, зафиксированные до запроса
+        eventWriter.flush();
         List<EventDto> events = repository.findByUserIdOrderByEventIdAsc(userId)
                 .stream()
                 .map(mapper::toEventDto)
@@ -40,4 +44,34 @@ public class EventService {
         log.info("Возвращено {} событий", events.size());
         return events;
     }
-}
\ No newline at end of file
+
+    /**
+     * Страница ленты по индексу (user_id, event_id): в порядке возрастания — события после {@code after},
+     * в порядке убывания — до {@code after}, начиная с самых новых.
+     */
+    public List<EventDto> getEvents(Long userId, Long after, Integer limit, boolean newestFirst) {
+        eventWriter.flush();
+        List<Event> page = newestFirst
+                ? repository.findByUserIdAndEventIdLessThanOrderByEventIdDesc(userId,
+                        after != null ? after : Long.MAX_VALUE, KeysetPage.limit(limit))
+                : repository.findByUserIdAndEventIdGreaterThanOrderByEventIdAsc(userId,
+                        KeysetPage.after(after), KeysetPage.limit(limit));
+        List<EventDto> events = page.stream()
+                .map(mapper::toEventDto)
+                .toList();
+        log.info("Возвращено {} событий", events.size());
+        return events;
+    }
+
+    /**
+     * Лента активности друзей пользователя, начиная с самых новых событий.
+     */
+    public List<EventDto> getFriendsEvents(Long userId, Integer limit) {
+        eventWriter.flush();
+        List<EventDto> events = friendTimeline.read(userId, KeysetPage.limit(limit)).stream()
+                .map(mapper::toEventDto)
+                .toList();
+        log.info("Возвращено {} событий друзей", events.size());
+        return events;
+    }
+}
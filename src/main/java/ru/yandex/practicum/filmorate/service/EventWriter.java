@@ -0,0 +1,267 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Types;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Запись событий ленты пакетами JDBC без отдельного INSERT с возвратом ключа на каждое событие.
+ * <ul>
+ *     <li>{@link Mode#ASYNC} — после фиксации транзакции событие попадает в ограниченную очередь,
+ *     которую фоновый писатель сбрасывает пакетами. При переполнении очереди поток запроса ждёт места
+ *     не дольше {@code filmorate.events.offer-timeout-ms}, после чего событие отбрасывается и учитывается
+ *     в метрике {@code filmorate.events.dropped}: второе соединение из пула поток, уже держащий соединение
+ *     запроса, не берёт. События, ещё не сброшенные на момент аварийной остановки, теряются.</li>
+ *     <li>{@link Mode#OUTBOX} — события копятся в рамках бизнес-транзакции и пишутся одним пакетом
+ *     перед её фиксацией: событие сохраняется тогда и только тогда, когда фиксируется транзакция.</li>
+ * </ul>
+ * Порядок событий в ленте определяется порядком вставки, поэтому очередь сбрасывается под блокировкой,
+ * которая держится до фиксации записи: дождавшийся её читатель ленты видит все снятые с очереди события.
+ * Соединение берётся до блокировки: иначе держатель блокировки ждёт пул, все соединения которого заняты
+ * запросами, ждущими ту же блокировку перед чтением ленты.
+ * Записанные события раздаются в ленты друзей через {@link FriendTimeline}.
+ */
+@Slf4j
+@Component
+public class EventWriter {
+    private static final String INSERT_SQL =
+            "INSERT INTO events (user_id, event_type, operation, entity_id, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    public enum Mode {
+        ASYNC, OUTBOX
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FriendTimeline friendTimeline;
+    private final Mode mode;
+    private final int batchSize;
+    private final BlockingQueue<Event> queue;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final TransactionTemplate flushTransaction;
+    private final Timer flushTimer;
+    private final long offerTimeoutMillis;
+    private final Counter droppedEvents;
+
+    public EventWriter(JdbcTemplate jdbcTemplate, FriendTimeline friendTimeline, MeterRegistry meterRegistry,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${filmorate.events.mode:ASYNC}") Mode mode,
+                       @Value("${filmorate.events.queue-capacity:10000}") int queueCapacity,
+                       @Value("${filmorate.events.batch-size:500}") int batchSize,
+                       @Value("${filmorate.events.offer-timeout-ms:100}") long offerTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.friendTimeline = friendTimeline;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        // Запрос ленты переиспользует соединение своей сессии, фоновый сброс получает собственное
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        Gauge.builder("filmorate.events.queue.size", queue, Collection::size)
+                .description("События, ожидающие записи")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("filmorate.events.flush")
+                .description("Время записи пакета событий")
+                .register(meterRegistry);
+        this.droppedEvents = Counter.builder("filmorate.events.dropped")
+                .description("События, отброшенные из-за переполнения очереди")
+                .register(meterRegistry);
+        log.info("Запись событий в режиме {}", mode);
+    }
+
+    public void write(Event event) {
+        if (mode == Mode.OUTBOX) {
+            writeBeforeCommit(event);
+        } else {
+            AfterCommit.run(() -> enqueue(event));
+        }
+    }
+
+    /**
+     * Сбрасывает накопленные события и возвращается, когда зафиксированы все события, поставленные
+     * в очередь до вызова, в том числе уже снятые с очереди другим потоком. Вызывается по расписанию
+     * и перед чтением ленты.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.events.flush-interval-ms:100}")
+    public void flush() {
+        if (written.get() >= enqueued.get()) {
+            return;
+        }
+        flushTransaction.executeWithoutResult(status -> drainUntilCompletion());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void enqueue(Event event) {
+        // Счётчик растёт до постановки в очередь: иначе событие могло бы быть засчитано записанным раньше,
+        // чем поставленным, и flush() пропустил бы ещё не зафиксированное событие
+        enqueued.incrementAndGet();
+        try {
+            if (queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        enqueued.decrementAndGet();
+        droppedEvents.increment();
+        log.warn("Очередь событий переполнена, событие отброшено: {}", event);
+    }
+
+    /**
+     * Сбрасывает очередь в текущей транзакции. Блокировка берётся после соединения транзакции
+     * и отпускается только после её завершения, тогда же сброшенные события засчитываются записанными.
+     */
+    private void drainUntilCompletion() {
+        flushLock.lock();
+        AtomicLong drained = new AtomicLong();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                // При откате события тоже засчитываются: повторно их уже не записать
+                written.addAndGet(drained.get());
+                flushLock.unlock();
+            }
+        });
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            drained.addAndGet(batch.size());
+            flushTimer.record(() -> insert(batch));
+            batch.clear();
+        }
+    }
+
+    /**
+     * Пишет пакет; если пакет отклонён (например, пользователь уже удалён), повторяет запись построчно,
+     * чтобы одно событие не лишило ленты остальных. Строки пакета, вставленные до ошибки, откатываются
+     * к точке сохранения, иначе построчный повтор задвоил бы их в ленте.
+     */
+    private void insert(List<Event> events) {
+        List<Event> written = events;
+        try {
+            insertBatch(events);
+        } catch (DataAccessException e) {
+            log.warn("Пакет из {} событий не записан, запись по одному", events.size(), e);
+            written = new ArrayList<>(events.size());
+            for (Event event : events) {
+                try {
+                    insertBatch(List.of(event));
+                    written.add(event);
+                } catch (DataAccessException ex) {
+                    log.error("Событие не записано: {}", event, ex);
+                }
+            }
+        }
+        try {
+            friendTimeline.fanOut(written);
+        } catch (DataAccessException e) {
+            log.error("События не разосланы в ленты друзей", e);
+        }
+    }
+
+    /**
+     * Пишет события одним пакетом и проставляет им сгенерированные идентификаторы. Внутри транзакции
+     * отклонённый пакет откатывается целиком: драйвер может сохранить строки, прошедшие до ошибки.
+     */
+    private void insertBatch(List<Event> events) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[]{"event_id"})) {
+                for (Event event : events) {
+                    bind(ps, event);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (Event event : events) {
+                        if (!keys.next()) {
+                            break;
+                        }
+                        event.setEventId(keys.getLong(1));
+                    }
+                }
+            } catch (SQLException e) {
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                }
+                throw e;
+            }
+            if (savepoint != null) {
+                connection.releaseSavepoint(savepoint);
+            }
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeBeforeCommit(Event event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insertBatch(List.of(event));
+            friendTimeline.fanOut(List.of(event));
+            return;
+        }
+        List<Event> pending = (List<Event>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<Event> buffer = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // Ошибка записи откатывает бизнес-транзакцию
+                    flushTimer.record(() -> {
+                        insertBatch(buffer);
+                        friendTimeline.fanOut(buffer);
+                    });
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(EventWriter.this);
+                }
+            });
+            pending = buffer;
+        }
+        pending.add(event);
+    }
+
+    private static void bind(PreparedStatement ps, Event event) throws SQLException {
+        ps.setLong(1, event.getUserId());
+        ps.setString(2, event.getEventType().name());
+        ps.setString(3, event.getOperation().name());
+        ps.setLong(4, event.getEntityId());
+        ps.setObject(5, event.getTimestamp().atOffset(ZoneOffset.UTC), Types.TIMESTAMP_WITH_TIMEZONE);
+    }
+}
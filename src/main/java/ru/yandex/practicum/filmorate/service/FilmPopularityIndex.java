@@ -0,0 +1,183 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Индекс популярности фильмов: счётчик лайков по каждому фильму и отсортированные
+ * по убыванию лайков корзины (все фильмы, жанр, год, жанр + год).
+ * Топ-K для /films/popular читается из нужной корзины за O(K) без загрузки лайков.
+ * При старте приложения индекс перестраивается по счётчикам films.likes_count.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmPopularityIndex {
+    private static final Comparator<Entry> BY_LIKES_DESC = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, FilmState> films = new ConcurrentHashMap<>();
+    private final Map<BucketKey, NavigableSet<Entry>> buckets = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        Map<Long, LocalDate> releaseDates = new HashMap<>();
+        Map<Long, Integer> likes = new HashMap<>();
+        jdbcTemplate.query("SELECT id, release_date, likes_count FROM films", rs -> {
+            java.sql.Date date = rs.getDate("release_date");
+            releaseDates.put(rs.getLong("id"), date != null ? date.toLocalDate() : null);
+            likes.put(rs.getLong("id"), rs.getInt("likes_count"));
+        });
+        Map<Long, List<Long>> genres = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genres", rs -> {
+            genres.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>()).add(rs.getLong("genre_id"));
+        });
+
+        films.clear();
+        buckets.clear();
+        releaseDates.forEach((filmId, releaseDate) -> {
+            FilmState state = new FilmState(genreIds(genres.getOrDefault(filmId, List.of())),
+                    releaseDate != null ? releaseDate.getYear() : null, likes.getOrDefault(filmId, 0));
+            films.put(filmId, state);
+            addToBuckets(filmId, state);
+        });
+        log.info("Индекс популярности перестроен: {} фильмов", films.size());
+    }
+
+    /**
+     * Возвращает идентификаторы самых популярных фильмов с учётом необязательных фильтров.
+     */
+    public List<Long> findTop(int count, Long genreId, Integer year) {
+        NavigableSet<Entry> bucket = buckets.get(new BucketKey(genreId, year));
+        if (bucket == null) {
+            return List.of();
+        }
+        // Во время перемещения фильма между позициями он может кратковременно встретиться дважды
+        Set<Long> result = new LinkedHashSet<>();
+        for (Entry entry : bucket) {
+            if (result.size() == count) {
+                break;
+            }
+            result.add(entry.filmId());
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Добавляет фильм в индекс или обновляет его жанры и год, сохраняя счётчик лайков.
+     */
+    public void put(Long filmId, Collection<Long> genreIds, LocalDate releaseDate) {
+        AfterCommit.run(() -> doPut(filmId, genreIds, releaseDate));
+    }
+
+    public void remove(Long filmId) {
+        AfterCommit.run(() -> doRemove(filmId));
+    }
+
+    public void clear() {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                films.clear();
+                buckets.clear();
+            }
+        });
+    }
+
+    public void changeLikes(Long filmId, int delta) {
+        AfterCommit.run(() -> doChangeLikes(filmId, delta));
+    }
+
+    private synchronized void doPut(Long filmId, Collection<Long> genreIds, LocalDate releaseDate) {
+        FilmState previous = films.get(filmId);
+        FilmState state = new FilmState(genreIds(genreIds), releaseDate != null ? releaseDate.getYear() : null,
+                previous != null ? previous.likes() : 0);
+        if (previous != null) {
+            removeFromBuckets(filmId, previous);
+        }
+        films.put(filmId, state);
+        addToBuckets(filmId, state);
+    }
+
+    private synchronized void doRemove(Long filmId) {
+        FilmState previous = films.remove(filmId);
+        if (previous != null) {
+            removeFromBuckets(filmId, previous);
+        }
+    }
+
+    private synchronized void doChangeLikes(Long filmId, int delta) {
+        FilmState previous = films.get(filmId);
+        if (previous == null) {
+            log.warn("Фильм ID={} отсутствует в индексе популярности", filmId);
+            return;
+        }
+        FilmState state = new FilmState(previous.genreIds(), previous.year(), Math.max(0, previous.likes() + delta));
+        if (state.likes() == previous.likes()) {
+            return;
+        }
+        films.put(filmId, state);
+        // Сначала вставляем новую позицию, затем удаляем старую, чтобы читатели не теряли фильм
+        addToBuckets(filmId, state);
+        removeFromBuckets(filmId, previous);
+    }
+
+    private void addToBuckets(Long filmId, FilmState state) {
+        Entry entry = new Entry(filmId, state.likes());
+        for (BucketKey key : bucketKeys(state)) {
+            buckets.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>(BY_LIKES_DESC)).add(entry);
+        }
+    }
+
+    private void removeFromBuckets(Long filmId, FilmState state) {
+        Entry entry = new Entry(filmId, state.likes());
+        for (BucketKey key : bucketKeys(state)) {
+            NavigableSet<Entry> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(entry);
+            }
+        }
+    }
+
+    private static List<BucketKey> bucketKeys(FilmState state) {
+        List<BucketKey> keys = new ArrayList<>(2 + state.genreIds().length * 2);
+        keys.add(new BucketKey(null, null));
+        if (state.year() != null) {
+            keys.add(new BucketKey(null, state.year()));
+        }
+        for (long genreId : state.genreIds()) {
+            keys.add(new BucketKey(genreId, null));
+            if (state.year() != null) {
+                keys.add(new BucketKey(genreId, state.year()));
+            }
+        }
+        return keys;
+    }
+
+    private static long[] genreIds(Collection<Long> genreIds) {
+        return genreIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private record FilmState(long[] genreIds, Integer year, int likes) {
+    }
+
+    private record BucketKey(Long genreId, Integer year) {
+    }
+
+    private record Entry(long filmId, int likes) {
+    }
+}
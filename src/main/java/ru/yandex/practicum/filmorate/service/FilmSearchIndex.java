@@ -0,0 +1,261 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс триграмм по названиям фильмов и именам режиссёров.
+ * Кандидаты берутся из пересечения списков триграмм запроса и проверяются на вхождение подстроки,
+ * поэтому результат совпадает с прежним регистронезависимым LIKE '%query%', но без полного сканирования.
+ * Индекс строится при старте и обновляется после фиксации транзакций, меняющих фильмы и режиссёров.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+    private static final int GRAM = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, String> titles = new HashMap<>();
+    private final Map<Long, Set<Long>> filmDirectors = new HashMap<>();
+    private final Map<Long, String> directorNames = new HashMap<>();
+    private final Map<Long, Set<Long>> directorFilms = new HashMap<>();
+    private final Map<String, Set<Long>> titleGrams = new HashMap<>();
+    private final Map<String, Set<Long>> directorGrams = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Long, String> films = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM films", rs -> {
+            films.put(rs.getLong("id"), rs.getString("name"));
+        });
+        Map<Long, String> directors = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM directors", rs -> {
+            directors.put(rs.getLong("id"), rs.getString("name"));
+        });
+        Map<Long, Set<Long>> links = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, director_id FROM film_directors", rs -> {
+            links.computeIfAbsent(rs.getLong("film_id"), id -> new HashSet<>()).add(rs.getLong("director_id"));
+        });
+
+        write(() -> {
+            reset();
+            directors.forEach(this::doPutDirector);
+            films.forEach((filmId, title) -> doPutFilm(filmId, title, links.getOrDefault(filmId, Set.of())));
+            log.info("Поисковый индекс перестроен: {} фильмов, {} режиссёров", titles.size(), directorNames.size());
+        });
+    }
+
+    /**
+     * Ищет фильмы по подстроке в названии и/или имени режиссёра.
+     *
+     * @return идентификаторы найденных фильмов с оценкой релевантности
+     */
+    public Map<Long, Integer> search(String query, boolean byTitle, boolean byDirector) {
+        String normalized = normalize(query);
+        Map<Long, Integer> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if (byTitle) {
+                for (Long filmId : candidates(titleGrams, titles, normalized)) {
+                    scores.merge(filmId, relevance(titles.get(filmId), normalized), Math::max);
+                }
+            }
+            if (byDirector) {
+                for (Long directorId : candidates(directorGrams, directorNames, normalized)) {
+                    int score = relevance(directorNames.get(directorId), normalized);
+                    for (Long filmId : directorFilms.getOrDefault(directorId, Set.of())) {
+                        scores.merge(filmId, score, Math::max);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return scores;
+    }
+
+    /**
+     * Индексирует фильм вместе с режиссёрами; имена режиссёров, равные null, не меняются.
+     */
+    public void putFilm(Long filmId, String title, Map<Long, String> directors) {
+        AfterCommit.run(() -> write(() -> {
+            directors.forEach((directorId, name) -> {
+                if (name != null) {
+                    doPutDirector(directorId, name);
+                }
+            });
+            doPutFilm(filmId, title, directors.keySet());
+        }));
+    }
+
+    public void removeFilm(Long filmId) {
+        AfterCommit.run(() -> write(() -> doRemoveFilm(filmId)));
+    }
+
+    public void clearFilms() {
+        AfterCommit.run(() -> write(() -> {
+            titles.clear();
+            titleGrams.clear();
+            filmDirectors.clear();
+            directorFilms.clear();
+        }));
+    }
+
+    public void putDirector(Long directorId, String name) {
+        AfterCommit.run(() -> write(() -> doPutDirector(directorId, name)));
+    }
+
+    public void removeDirector(Long directorId) {
+        AfterCommit.run(() -> write(() -> {
+            String name = directorNames.remove(directorId);
+            if (name != null) {
+                removeGrams(directorGrams, name, directorId);
+            }
+            for (Long filmId : directorFilms.getOrDefault(directorId, Set.of())) {
+                Set<Long> directors = filmDirectors.get(filmId);
+                if (directors != null) {
+                    directors.remove(directorId);
+                }
+            }
+            directorFilms.remove(directorId);
+        }));
+    }
+
+    private void doPutFilm(Long filmId, String title, Collection<Long> directorIds) {
+        doRemoveFilm(filmId);
+        String normalized = normalize(title);
+        titles.put(filmId, normalized);
+        addGrams(titleGrams, normalized, filmId);
+        Set<Long> directors = new HashSet<>(directorIds);
+        filmDirectors.put(filmId, directors);
+        for (Long directorId : directors) {
+            directorFilms.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId);
+        }
+    }
+
+    private void doRemoveFilm(Long filmId) {
+        String title = titles.remove(filmId);
+        if (title != null) {
+            removeGrams(titleGrams, title, filmId);
+        }
+        for (Long directorId : filmDirectors.getOrDefault(filmId, Set.of())) {
+            Set<Long> films = directorFilms.get(directorId);
+            if (films != null) {
+                films.remove(filmId);
+            }
+        }
+        filmDirectors.remove(filmId);
+    }
+
+    private void doPutDirector(Long directorId, String name) {
+        String normalized = normalize(name);
+        String previous = directorNames.put(directorId, normalized);
+        if (previous != null) {
+            removeGrams(directorGrams, previous, directorId);
+        }
+        addGrams(directorGrams, normalized, directorId);
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reset() {
+        titles.clear();
+        filmDirectors.clear();
+        directorNames.clear();
+        directorFilms.clear();
+        titleGrams.clear();
+        directorGrams.clear();
+    }
+
+    /**
+     * Пересекает списки триграмм запроса, начиная с самого короткого, и отбрасывает ложные совпадения.
+     * Запросы короче триграммы проверяются по всем документам.
+     */
+    private static Collection<Long> candidates(Map<String, Set<Long>> grams, Map<Long, String> documents,
+                                               String query) {
+        if (query.length() < GRAM) {
+            return documents.entrySet().stream()
+                    .filter(entry -> entry.getValue().contains(query))
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+        List<Set<Long>> postings = new ArrayList<>();
+        for (String gram : grams(query)) {
+            Set<Long> posting = grams.get(gram);
+            if (posting == null) {
+                return List.of();
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        List<Long> result = new ArrayList<>();
+        for (Long id : postings.get(0)) {
+            if (postings.stream().allMatch(posting -> posting.contains(id)) && documents.get(id).contains(query)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Полное совпадение важнее совпадения с начала строки, оно — совпадения с начала слова.
+     */
+    private static int relevance(String text, String query) {
+        if (text.equals(query)) {
+            return 4;
+        }
+        if (text.startsWith(query)) {
+            return 3;
+        }
+        int position = text.indexOf(query);
+        return position > 0 && !Character.isLetterOrDigit(text.charAt(position - 1)) ? 2 : 1;
+    }
+
+    private static void addGrams(Map<String, Set<Long>> grams, String text, Long id) {
+        for (String gram : grams(text)) {
+            grams.computeIfAbsent(gram, g -> new HashSet<>()).add(id);
+        }
+    }
+
+    private static void removeGrams(Map<String, Set<Long>> grams, String text, Long id) {
+        for (String gram : grams(text)) {
+            Set<Long> posting = grams.get(gram);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            result.add(text.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -2,13 +2,17 @@ package ru.yandex.practicum.filmorate.service;
 
 import jakarta.persistence.criteria.*;
 import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.repository.*;
 import ru.yandex.practicum.filmorate.dto.ChangeFilmDto;
 import ru.yandex.practicum.filmorate.dto.FilmResponseDto;
@@ -24,10 +28,10 @@ import java.util.stream.Collectors;
 @Slf4j
 @RequiredArgsConstructor
 @Service
+@Timed(value = "filmorate.service", histogram = true)
 public class FilmService {
     private final FilmRepository filmRepository;
     private final UserRepository userRepository;
-    private final MpaRepository mpaRepository;
     private final DirectorRepository directorRepository;
     private final DirectorMapper directorMapper;
     private final FilmMapper filmMapper;
@@ -35,18 +39,42 @@ public class FilmService {
     private final JdbcTemplate jdbcTemplate;
     private final EventService eventService;
     private final DirectorService directorService;
+    private final FilmPopularityIndex popularityIndex;
+    private final RecommendationEngine recommendationEngine;
+    private final FilmSearchIndex searchIndex;
+    private final JsonArrayStreamer jsonArrayStreamer;
+    private final ReferenceDataCache referenceData;
+    private final ReferenceIdValidator referenceIds;
+    private final SecondLevelCacheEvictor cacheEvictor;
+    private final ResourceVersions versions;
 
     private static final LocalDate MIN_RELEASE_DATE = LocalDate.of(1895, 12, 28);
 
     public ResponseEntity<List<FilmResponseDto>> getAllFilms() {
         log.debug("Запрос всех фильмов");
-        List<FilmResponseDto> films = filmRepository.findAll().stream()
-                .map(filmMapper::toFilmDto)
-                .toList();
+        List<FilmResponseDto> films = filmMapper.toFilmDtoList(filmRepository.findAll());
+        log.info("Возвращено {} фильмов", films.size());
+        return ResponseEntity.ok(films);
+    }
+
+    public ResponseEntity<List<FilmResponseDto>> getAllFilms(Long after, Integer limit) {
+        if (after == null && limit == null) {
+            return getAllFilms();
+        }
+        log.debug("Запрос страницы фильмов после ID={}, limit={}", after, limit);
+        List<FilmResponseDto> films = filmMapper.toFilmDtoList(
+                filmRepository.findByIdGreaterThanOrderByIdAsc(KeysetPage.after(after), KeysetPage.limit(limit)));
         log.info("Возвращено {} фильмов", films.size());
         return ResponseEntity.ok(films);
     }
 
+    public ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        log.debug("Потоковая выгрузка всех фильмов");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonArrayStreamer.stream(filmRepository::streamAll, filmMapper::toFilmDtoList));
+    }
+
     @Transactional
     public ResponseEntity<FilmResponseDto> addFilm(ChangeFilmDto film) {
         log.debug("Попытка добавить фильм: {}", film.getName());
@@ -55,17 +83,13 @@ public class FilmService {
             log.warn("Некорректная дата релиза: {}", film.getReleaseDate());
             throw new ValidationException("Дата релиза не может быть раньше 28 декабря 1895 года");
         }
-        if (film.getMpa() != null && (film.getMpa().getId() < 1 || film.getMpa().getId() > 5)) {
-            throw new NotFoundException("Mpa рейтинга с ID %s не существует"
-                    .formatted(film.getMpa().getId()));
-        }
-        if (film.getGenres() != null && film.getGenres().stream()
-                .anyMatch(genre -> genre.getId() < 1 || genre.getId() > 6)) {
-            throw new NotFoundException("Жанра с таким ID не существует");
+        if (film.getMpa() != null) {
+            referenceIds.requireMpa(film.getMpa().getId());
         }
+        referenceIds.requireGenres(film.getGenres());
         if (film.getDirectors() != null) {
             film.getDirectors().forEach(directorDto -> {
-                Optional<Director> existingDirector = directorRepository.findById(directorDto.getId());
+                Optional<Director> existingDirector = referenceData.findDirector(directorDto.getId());
                 if (existingDirector.isEmpty()) {
                     directorService.addDirector(directorDto);
                 }
@@ -76,6 +100,8 @@ public class FilmService {
 
         Film entity = filmMapper.toEntity(film);
         filmRepository.save(entity);
+        popularityIndex.put(entity.getId(), genreIds(entity), entity.getReleaseDate());
+        searchIndex.putFilm(entity.getId(), entity.getName(), directorNames(entity));
         log.info("Фильм успешно добавлен: ID={}, Название={}", entity.getId(), entity.getName());
         return ResponseEntity.status(HttpStatus.CREATED).body(filmMapper.toFilmDto(entity));
     }
@@ -84,10 +110,10 @@ public class FilmService {
     public ResponseEntity<FilmResponseDto> updateFilm(ChangeFilmDto film) {
         log.debug("Попытка обновить фильм ID={}", film.getId());
 
-        List<Film> allFilms = filmRepository.findAll();
-        Film updateFilm = allFilms.stream()
-                .filter(f -> Objects.equals(f.getId(), film.getId()))
-                .findFirst()
+        if (film.getId() == null) {
+            throw new NotFoundException("Фильм с id null не найден");
+        }
+        Film updateFilm = filmRepository.findById(film.getId())
                 .orElseThrow(() -> {
                     log.error("Фильм не найден: ID={}", film.getId());
                     return new NotFoundException("Фильм с id " + film.getId() + " не найден");
@@ -118,10 +144,8 @@ public class FilmService {
             updateFilm.setDuration(film.getDuration());
         }
         if (film.getMpa() != null) {
-            if (film.getMpa().getId() < 1 || film.getMpa().getId() > 5) {
-                throw new NotFoundException("MPA рейтинга с ID %d не существует".formatted(film.getMpa().getId()));
-            }
-            Mpa mpaEntity = mpaRepository.findById(film.getMpa().getId())
+            referenceIds.requireMpa(film.getMpa().getId());
+            Mpa mpaEntity = referenceData.findMpa(film.getMpa().getId())
                     .orElseThrow(() -> new NotFoundException("MPA рейтинг не найден"));
             if (updateFilm.getMpaRating() == null || !updateFilm.getMpaRating().getId().equals(mpaEntity.getId())) {
                 log.debug("Обновление MPA рейтинга с {} на {}",
@@ -131,11 +155,7 @@ public class FilmService {
             }
         }
         if (film.getGenres() != null) {
-            film.getGenres().forEach(genreDto -> {
-                if (genreDto.getId() < 1 || genreDto.getId() > 6) {
-                    throw new NotFoundException("Жанра с ID %d не существует".formatted(genreDto.getId()));
-                }
-            });
+            referenceIds.requireGenres(film.getGenres());
             List<Genre> uniqueGenres = film.getGenres().stream()
                     .distinct()
                     .map(genreMapper::toEntity)
@@ -149,14 +169,17 @@ public class FilmService {
             List<Director> unique = film.getDirectors().stream()
                     .distinct()
                     .map(dir -> {
-                        Optional<Director> existingDirector = directorRepository.findById(dir.getId());
+                        Optional<Director> existingDirector = referenceData.findDirector(dir.getId());
                         if (existingDirector.isPresent()) {
-                            if (dir.getName() == null || dir.getName().isBlank()) {
-                                return existingDirector.get();
-                            }
                             Director director = existingDirector.get();
-                            director.setName(dir.getName());
-                            return directorRepository.save(director);
+                            if (dir.getName() == null || dir.getName().isBlank()
+                                    || dir.getName().equals(director.getName())) {
+                                return director;
+                            }
+                            // Закэшированный экземпляр общий для всех потоков, поэтому не меняем его
+                            referenceData.evictDirector(director.getId());
+                            versions.directorChanged(director.getId());
+                            return directorRepository.save(new Director(director.getId(), dir.getName()));
                         } else {
                             if (dir.getName() == null || dir.getName().isBlank()) {
                                 throw new ValidationException("Имя режиссера обязательно!");
@@ -173,6 +196,9 @@ public class FilmService {
             updateFilm.setDirectors(new ArrayList<>());
         }
         filmRepository.save(updateFilm);
+        versions.filmChanged(updateFilm.getId());
+        popularityIndex.put(updateFilm.getId(), genreIds(updateFilm), updateFilm.getReleaseDate());
+        searchIndex.putFilm(updateFilm.getId(), updateFilm.getName(), directorNames(updateFilm));
         log.info("Фильм успешно обновлен: ID={}", film.getId());
         return ResponseEntity.ok().body(filmMapper.toFilmDto(updateFilm));
     }
@@ -186,23 +212,15 @@ public class FilmService {
             throw new ValidationException("ID не может быть null");
         }
 
-        Film film = filmRepository.findById(filmId)
-                .orElseThrow(() -> {
-                    log.error("Фильм не найден: ID={}", filmId);
-                    return new NotFoundException("Фильм с id " + filmId + " не найден");
-                });
-
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> {
-                    log.error("Пользователь не найден: ID={}", userId);
-                    return new NotFoundException("Пользователь с id " + userId + " не найден");
-                });
+        checkFilmAndUserExist(filmId, userId);
 
-        List<User> usersWithLikes = film.getUsersWithLikes();
-        if (!usersWithLikes.contains(user)) {
-            usersWithLikes.add(user);
+        if (filmRepository.insertLikeIfAbsent(filmId, userId) > 0) {
+            filmRepository.changeLikesCount(filmId, 1);
+            cacheEvictor.evictFilm(filmId);
+            versions.filmChanged(filmId);
+            popularityIndex.changeLikes(filmId, 1);
+            recommendationEngine.addLike(filmId, userId);
         }
-        filmRepository.save(film);
         eventService.createEvent(userId, EventType.LIKE, EventOperation.ADD, filmId);
 
         log.info("Лайк добавлен: filmID={}, userID={}", filmId, userId);
@@ -218,25 +236,17 @@ public class FilmService {
             throw new ValidationException("ID не был введен");
         }
 
-        Film film = filmRepository.findById(filmId)
-                .orElseThrow(() -> {
-                    log.error("Фильм не найден: ID={}", filmId);
-                    return new NotFoundException("Фильм с id " + filmId + " не найден");
-                });
+        checkFilmAndUserExist(filmId, userId);
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> {
-                    log.error("Пользователь не найден: ID={}", userId);
-                    return new NotFoundException("Пользователь с id " + userId + " не найден");
-                });
-
-        List<User> usersWithLikes = film.getUsersWithLikes();
-        if (!usersWithLikes.remove(user)) {
+        if (filmRepository.deleteLike(filmId, userId) == 0) {
             log.warn("Лайк не найден: userID={} не лайкал filmID={}", userId, filmId);
             throw new ValidationException("Пользователь не ставил лайк этому фильму");
         }
-
-        filmRepository.save(film);
+        filmRepository.changeLikesCount(filmId, -1);
+        cacheEvictor.evictFilm(filmId);
+        versions.filmChanged(filmId);
+        popularityIndex.changeLikes(filmId, -1);
+        recommendationEngine.removeLike(filmId, userId);
         eventService.createEvent(userId, EventType.LIKE, EventOperation.REMOVE, filmId);
 
         log.info("Лайк удален: filmID={}, userID={}", filmId, userId);
@@ -251,9 +261,9 @@ public class FilmService {
             throw new ValidationException("Параметр count должен быть положительным числом.");
         }
 
-        if (genreId != null && (genreId < 1 || genreId > 6)) {
+        if (genreId != null && !referenceIds.isGenre(genreId)) {
             log.warn("Некорректный параметр genreId: {}", genreId);
-            throw new ValidationException("Всего 6 жанров. Выбрать число от 1 до 6.");
+            throw new ValidationException("Жанр с ID %s не существует".formatted(genreId));
         }
 
         if (year != null && year < 1985) {
@@ -261,21 +271,18 @@ public class FilmService {
             throw new ValidationException("Год создания не раньше 1985.");
         }
 
-        List<Film> popularFilms = filmRepository.findAll().stream()
-
-                .filter(film -> {
-                    if (genreId != null && film.getGenres().stream().noneMatch(g -> g.getId().equals(genreId))) {
-                        return false;
-                    }
-                    return year == null || film.getReleaseDate().getYear() == year;
-                })
-                .sorted(Comparator.comparingInt((Film film) -> film.getUsersWithLikes().size()).reversed())
-                .limit(count)
-                .toList();
+        List<Film> popularFilms = findAllInOrder(popularityIndex.findTop(count, genreId, year));
         log.info("Возвращено {} популярных фильмов", popularFilms.size());
         return ResponseEntity.ok(filmMapper.toFilmDtoList(popularFilms));
     }
 
+    @Transactional
+    public ResponseEntity<FilmResponseDto> getFilmById(Long filmId, String ifNoneMatch) {
+        long version = versions.film(filmId)
+                .orElseThrow(() -> new NotFoundException("Фильм с ID %s не найден".formatted(filmId)));
+        return versions.conditional(filmId, version, ifNoneMatch, () -> getFilmById(filmId));
+    }
+
     public ResponseEntity<FilmResponseDto> getFilmById(Long filmId) {
         Film film = filmRepository.findById(filmId)
                 .orElseThrow(() -> new NotFoundException("Фильм с ID %s не найден".formatted(filmId)));
@@ -289,6 +296,10 @@ public class FilmService {
     public void deleteAllFilms() {
         log.warn("Удаление всех фильмов");
         filmRepository.deleteAll();
+        cacheEvictor.evictReviews();
+        popularityIndex.clear();
+        recommendationEngine.clear();
+        searchIndex.clearFilms();
         log.info("Все фильмы удалены");
     }
 
@@ -296,7 +307,7 @@ public class FilmService {
     public ResponseEntity<List<FilmResponseDto>> findFilmsByDirectorSorted(Long directorId, String sortBy) {
         log.debug("Попытка отсортировать фильмы режиссера c ID {} по параметру {}", directorId, sortBy);
 
-        Optional<Director> optionalDirector = directorRepository.findById(directorId);
+        Optional<Director> optionalDirector = referenceData.findDirector(directorId);
 
         if (optionalDirector.isEmpty()) {
             log.error("Режиссер с ID {} не найден.", directorId);
@@ -312,8 +323,7 @@ public class FilmService {
             if ("year".equalsIgnoreCase(sortBy)) {
                 query.orderBy(cb.asc(cb.function("YEAR", Integer.class, root.get("releaseDate"))));
             } else if ("likes".equalsIgnoreCase(sortBy)) {
-                Expression<Integer> countExpression = cb.size(root.get("usersWithLikes"));
-                query.orderBy(cb.desc(countExpression));
+                query.orderBy(cb.desc(root.get("likesCount")));
             } else {
                 throw new IllegalArgumentException("Неверный параметр сортировки: " + sortBy);
             }
@@ -333,7 +343,7 @@ public class FilmService {
     }
 
     public List<FilmResponseDto> getRecommendations(Long userId) {
-        List<Film> recommendations = filmRepository.findRecommendations(userId);
+        List<Film> recommendations = findAllInOrder(recommendationEngine.recommend(userId));
         log.info("Возвращено {} рекомендованных фильмов", recommendations.size());
         return filmMapper.toFilmDtoList(recommendations);
     }
@@ -349,47 +359,96 @@ public class FilmService {
         jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", filmId);
         jdbcTemplate.update("DELETE FROM likes WHERE film_id = ?", filmId);
         filmRepository.deleteById(filmId);
+        cacheEvictor.evictReviews();
+        popularityIndex.remove(filmId);
+        recommendationEngine.removeFilm(filmId);
+        searchIndex.removeFilm(filmId);
         log.info("Фильм с ID {} и все его зависимости успешно удалены", filmId);
     }
 
     public ResponseEntity<List<FilmResponseDto>> getCommonFilms(Long userId, Long friendId) {
-        log.debug("Запрос общих фильмов пользователя ID={} с другом ID={}", userId, friendId);
-
-        List<Film> userFilms = userRepository.findById(userId)
-                .map(User::getLikedFilms)
-                .orElse(new ArrayList<>());
+        return getCommonFilms(userId, friendId, null);
+    }
 
-        List<Film> friendFilms = userRepository.findById(friendId)
-                .map(User::getLikedFilms)
-                .orElse(new ArrayList<>());
+    public ResponseEntity<List<FilmResponseDto>> getCommonFilms(Long userId, Long friendId, Integer limit) {
+        log.debug("Запрос общих фильмов пользователя ID={} с другом ID={}", userId, friendId);
 
-        List<Film> commonFilms = userFilms.stream()
-                .filter(friendFilms::contains)
-                .sorted(Comparator.comparingInt((Film film) -> film.getUsersWithLikes().size()).reversed())
-                .toList();
+        List<Film> commonFilms = filmRepository.findCommonFilms(userId, friendId, KeysetPage.limitOrUnlimited(limit));
 
         log.info("Найдено {} общих фильмов между {} и {}", commonFilms.size(), userId, friendId);
 
         return ResponseEntity.ok(filmMapper.toFilmDtoList(commonFilms));
     }
 
-    public List<Film> searchFilmsByTitle(String query) {
-        log.debug("Начат поиск фильмов с подстрокой {}", query);
-        return filmRepository.findByNameContainingIgnoreCase(query);
+    public ResponseEntity<List<FilmResponseDto>> searchFilms(String query, String by, String sortBy,
+                                                             int offset, Integer limit) {
+        log.debug("Начат поиск фильмов с подстрокой {} по полям {}", query, by);
+
+        List<String> searchBy = Arrays.asList(by.toLowerCase().split(","));
+        boolean byTitle = searchBy.contains("title");
+        boolean byDirector = searchBy.contains("director");
+        if (!byTitle && !byDirector) {
+            log.warn("Некорректный параметр by: {}", by);
+            throw new ValidationException("Параметр by должен содержать title и/или director");
+        }
+        if (offset < 0) {
+            throw new ValidationException("Параметр offset не может быть отрицательным");
+        }
+
+        Comparator<Map.Entry<Long, Integer>> order = Map.Entry.<Long, Integer>comparingByKey().reversed();
+        if ("relevance".equalsIgnoreCase(sortBy)) {
+            order = Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(order);
+        }
+        Limit page = KeysetPage.limitOrUnlimited(limit);
+        List<Long> ids = searchIndex.search(query, byTitle, byDirector).entrySet().stream()
+                .sorted(order)
+                .skip(offset)
+                .limit(page.isLimited() ? page.max() : Long.MAX_VALUE)
+                .map(Map.Entry::getKey)
+                .toList();
+
+        List<FilmResponseDto> films = filmMapper.toFilmDtoList(findAllInOrder(ids));
+        log.info("Найдено {} фильмов по запросу {}", films.size(), query);
+        return ResponseEntity.ok(films);
+    }
+
+    private void checkFilmAndUserExist(Long filmId, Long userId) {
+        if (!filmRepository.existsById(filmId)) {
+            log.error("Фильм не найден: ID={}", filmId);
+            throw new NotFoundException("Фильм с id " + filmId + " не найден");
+        }
+        if (!userRepository.existsById(userId)) {
+            log.error("Пользователь не найден: ID={}", userId);
+            throw new NotFoundException("Пользователь с id " + userId + " не найден");
+        }
     }
 
-    public List<Film> searchFilmsByDirector(String query) {
-        log.debug("Начат поиск режиссеров с подстрокой {}", query);
-        List<Director> directors = directorRepository.findByNameContainingIgnoreCase(query);
+    private List<Film> findAllInOrder(List<Long> ids) {
+        Map<Long, Film> films = filmRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Film::getId, film -> film));
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
 
-        List<Long> directorIds = directors.stream()
-                .map(Director::getId)
-                .collect(Collectors.toList());
-        return filmRepository.findByDirectors_IdIn(directorIds);
+    private static Map<Long, String> directorNames(Film film) {
+        Map<Long, String> directors = new HashMap<>();
+        if (film.getDirectors() != null) {
+            film.getDirectors().stream()
+                    .filter(director -> director.getId() != null)
+                    .forEach(director -> directors.put(director.getId(), director.getName()));
+        }
+        return directors;
     }
 
-    public List<Film> searchFilmsByTitleOrDirector(String query) {
-        log.debug("Начат поиск фильмов и режиссеров с подстрокой {}", query);
-        return filmRepository.searchFilmsByTitleOrDirectorName(query);
+    private static List<Long> genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return List.of();
+        }
+        return film.getGenres().stream()
+                .filter(Objects::nonNull)
+                .map(Genre::getId)
+                .toList();
     }
-}
\ No newline at end of file
+}
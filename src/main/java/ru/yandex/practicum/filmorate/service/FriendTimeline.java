@@ -0,0 +1,230 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.repository.EventRepository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Лента активности друзей с раздачей при записи: событие пользователя копируется в ограниченную ленту
+ * каждого, кто добавил его в друзья (строки {@code user_friends} с {@code friend_id} автора).
+ * Ленты хранятся в памяти кольцевыми буферами и дублируются в таблице {@code friend_timeline},
+ * по которой восстанавливаются при старте.
+ * <p>
+ * События авторов, у которых подписчиков больше {@code filmorate.timeline.fan-out-limit}, не раздаются:
+ * читатель подмешивает их из {@code events} в момент чтения.
+ */
+@Slf4j
+@Component
+public class FriendTimeline {
+    private static final String INSERT_SQL = "INSERT INTO friend_timeline (owner_id, event_id) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final EventRepository eventRepository;
+    private final int capacity;
+    private final int fanOutLimit;
+
+    private final Map<Long, Ring> timelines = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> followers = new ConcurrentHashMap<>();
+
+    public FriendTimeline(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                          EventRepository eventRepository,
+                          @Value("${filmorate.timeline.capacity:200}") int capacity,
+                          @Value("${filmorate.timeline.fan-out-limit:1000}") int fanOutLimit) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.eventRepository = eventRepository;
+        this.capacity = capacity;
+        this.fanOutLimit = fanOutLimit;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        timelines.clear();
+        followers.clear();
+        jdbcTemplate.query("SELECT friend_id, COUNT(*) AS followers FROM user_friends GROUP BY friend_id", rs -> {
+            followers.put(rs.getLong("friend_id"), rs.getInt("followers"));
+        });
+        jdbcTemplate.query("""
+                SELECT ft.owner_id, e.event_id, e.user_id, e.event_type, e.operation, e.entity_id, e.timestamp
+                FROM friend_timeline AS ft
+                JOIN events AS e ON e.event_id = ft.event_id
+                ORDER BY ft.owner_id, ft.event_id""", rs -> {
+            ring(rs.getLong("owner_id")).add(toEvent(rs));
+        });
+        log.info("Ленты друзей восстановлены: {} лент", timelines.size());
+    }
+
+    /**
+     * Раздаёт записанные события подписчикам их авторов. Строки пишутся в текущей транзакции,
+     * кольцевые буферы обновляются после её фиксации.
+     */
+    public void fanOut(List<Event> events) {
+        Set<Long> actors = new HashSet<>();
+        for (Event event : events) {
+            if (followers.getOrDefault(event.getUserId(), 0) <= fanOutLimit) {
+                actors.add(event.getUserId());
+            }
+        }
+        Map<Long, List<Long>> followersByActor = new HashMap<>();
+        if (!actors.isEmpty()) {
+            namedJdbcTemplate.query("SELECT user_id, friend_id FROM user_friends WHERE friend_id IN (:actors)",
+                    Map.of("actors", actors), rs -> {
+                        followersByActor.computeIfAbsent(rs.getLong("friend_id"), id -> new ArrayList<>())
+                                .add(rs.getLong("user_id"));
+                    });
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Event event : events) {
+            for (Long owner : followersByActor.getOrDefault(event.getUserId(), List.of())) {
+                rows.add(new Object[]{owner, event.getEventId()});
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        }
+
+        List<Event> delivered = List.copyOf(events);
+        AfterCommit.run(() -> {
+            for (Event event : delivered) {
+                for (Long owner : followersByActor.getOrDefault(event.getUserId(), List.of())) {
+                    ring(owner).add(event);
+                }
+                countFollowers(event);
+            }
+        });
+    }
+
+    /**
+     * Возвращает события друзей пользователя, начиная с самых новых.
+     */
+    public List<Event> read(Long userId, Limit limit) {
+        Set<Long> friends = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT friend_id FROM user_friends WHERE user_id = ?", Long.class, userId));
+        // События бывших друзей остаются в буфере до вытеснения и отбрасываются при чтении
+        TreeMap<Long, Event> merged = new TreeMap<>(Comparator.reverseOrder());
+        Ring ring = timelines.get(userId);
+        if (ring != null) {
+            for (Event event : ring.snapshot()) {
+                if (friends.contains(event.getUserId())) {
+                    merged.put(event.getEventId(), event);
+                }
+            }
+        }
+        List<Long> popular = friends.stream()
+                .filter(friend -> followers.getOrDefault(friend, 0) > fanOutLimit)
+                .toList();
+        if (!popular.isEmpty()) {
+            eventRepository.findByUserIdInOrderByEventIdDesc(popular, limit)
+                    .forEach(event -> merged.put(event.getEventId(), event));
+        }
+        return merged.values().stream()
+                .limit(limit.max())
+                .toList();
+    }
+
+    public void removeUser(Long userId) {
+        AfterCommit.run(() -> {
+            timelines.remove(userId);
+            followers.remove(userId);
+        });
+    }
+
+    public void clear() {
+        AfterCommit.run(() -> {
+            timelines.clear();
+            followers.clear();
+        });
+    }
+
+    /**
+     * Удаляет из таблицы строки, вытесненные из кольцевых буферов.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.timeline.compaction-interval-ms:60000}")
+    public void compact() {
+        int removed = jdbcTemplate.update("""
+                DELETE FROM friend_timeline
+                WHERE (owner_id, event_id) IN (
+                    SELECT owner_id, event_id
+                    FROM (SELECT owner_id, event_id,
+                                 ROW_NUMBER() OVER (PARTITION BY owner_id ORDER BY event_id DESC) AS position
+                          FROM friend_timeline) AS ranked
+                    WHERE position > ?)""", capacity);
+        if (removed > 0) {
+            log.debug("Из лент друзей удалено {} вытесненных записей", removed);
+        }
+    }
+
+    private void countFollowers(Event event) {
+        if (event.getEventType() != EventType.FRIEND) {
+            return;
+        }
+        if (event.getOperation() == EventOperation.ADD) {
+            followers.merge(event.getEntityId(), 1, Integer::sum);
+        } else if (event.getOperation() == EventOperation.REMOVE) {
+            followers.computeIfPresent(event.getEntityId(), (id, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private Ring ring(Long owner) {
+        return timelines.computeIfAbsent(owner, id -> new Ring(capacity));
+    }
+
+    private static Event toEvent(ResultSet rs) throws SQLException {
+        return Event.builder()
+                .eventId(rs.getLong("event_id"))
+                .userId(rs.getLong("user_id"))
+                .eventType(EventType.valueOf(rs.getString("event_type")))
+                .operation(EventOperation.valueOf(rs.getString("operation")))
+                .entityId(rs.getLong("entity_id"))
+                .timestamp(rs.getObject("timestamp", OffsetDateTime.class).toInstant())
+                .build();
+    }
+
+    /**
+     * Кольцевой буфер последних событий; при переполнении вытесняется самое старое.
+     */
+    private static final class Ring {
+        private final Event[] events;
+        private int head;
+        private int size;
+
+        Ring(int capacity) {
+            this.events = new Event[capacity];
+        }
+
+        synchronized void add(Event event) {
+            events[(head + size) % events.length] = event;
+            if (size < events.length) {
+                size++;
+            } else {
+                head = (head + 1) % events.length;
+            }
+        }
+
+        synchronized List<Event> snapshot() {
+            List<Event> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(events[(head + i) % events.length]);
+            }
+            return result;
+        }
+    }
+}
@@ -4,7 +4,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.repository.GenreRepository;
 import ru.yandex.practicum.filmorate.dto.GenreDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.GenreMapper;
@@ -16,12 +15,12 @@ import java.util.List;
 @RequiredArgsConstructor
 @Service
 public class GenreService {
-    private final GenreRepository genreRepository;
+    private final ReferenceDataCache referenceData;
     private final GenreMapper genreMapper;
 
     public ResponseEntity<List<GenreDto>> getAllGenres() {
         log.debug("Запрос всех жанров");
-        List<GenreDto> genres = genreRepository.findAll().stream()
+        List<GenreDto> genres = referenceData.allGenres().stream()
                 .map(genreMapper::toGenreDto)
                 .toList();
 
@@ -32,7 +31,7 @@ public class GenreService {
     public ResponseEntity<GenreDto> getGenreById(Long id) {
         log.debug("Запрос жанра с ID: {}", id);
 
-        Genre genre = genreRepository.findById(id)
+        Genre genre = referenceData.findGenre(id)
                 .orElseThrow(() -> new NotFoundException("Жанр с ID %s не найден".formatted(id)));
 
         log.info("Найден жанр: ID={}, Название={}", id, genre.getName());
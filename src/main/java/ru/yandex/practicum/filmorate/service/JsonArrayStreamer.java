@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Пишет JSON-массив по мере чтения курсора из базы. Сущности обрабатываются порциями:
+ * порция маппится пакетно, сериализуется и вытесняется из контекста персистентности,
+ * поэтому расход памяти не зависит от размера таблицы.
+ */
+@Component
+@RequiredArgsConstructor
+public class JsonArrayStreamer {
+    static final int CHUNK_SIZE = 100;
+
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+    private final EntityManager entityManager;
+
+    public <E, D> StreamingResponseBody stream(Supplier<Stream<E>> source, Function<List<E>, List<D>> mapper) {
+        return out -> {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            transaction.executeWithoutResult(status -> {
+                try (Stream<E> entities = source.get();
+                     JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                    generator.writeStartArray();
+                    List<E> chunk = new ArrayList<>(CHUNK_SIZE);
+                    Iterator<E> iterator = entities.iterator();
+                    while (iterator.hasNext()) {
+                        chunk.add(iterator.next());
+                        if (chunk.size() == CHUNK_SIZE || !iterator.hasNext()) {
+                            for (D dto : mapper.apply(chunk)) {
+                                generator.writeObject(dto);
+                            }
+                            generator.flush();
+                            chunk.clear();
+                            entityManager.clear();
+                        }
+                    }
+                    generator.writeEndArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
+    }
+}
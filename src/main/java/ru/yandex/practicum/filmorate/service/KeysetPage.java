@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.data.domain.Limit;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+/**
+ * Параметры курсорной пагинации вида {@code ?after=<id>&limit=}.
+ */
+final class KeysetPage {
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private KeysetPage() {
+    }
+
+    static Limit limit(Integer limit) {
+        if (limit == null) {
+            return Limit.of(DEFAULT_LIMIT);
+        }
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new ValidationException("Параметр limit должен быть от 1 до %d".formatted(MAX_LIMIT));
+        }
+        return Limit.of(limit);
+    }
+
+    /**
+     * Необязательный лимит: без параметра выборка не ограничивается.
+     */
+    static Limit limitOrUnlimited(Integer limit) {
+        return limit != null ? limit(limit) : Limit.unlimited();
+    }
+
+    static long after(Long after) {
+        return after != null ? after : 0L;
+    }
+}
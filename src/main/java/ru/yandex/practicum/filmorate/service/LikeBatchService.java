@@ -0,0 +1,184 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.LikeOperationDto;
+import ru.yandex.practicum.filmorate.dto.LikeResultDto;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
+
+import java.util.*;
+
+/**
+ * Пакетная запись лайков. Фильмы, пользователи и текущие лайки пакета читаются тремя запросами,
+ * операции применяются к ним по порядку, а в базу одними пакетами JDBC уходит только итоговая разница:
+ * добавленные и удалённые строки {@code likes} и по одному изменению счётчика на фильм.
+ * <p>
+ * Каждая операция отвечает тем же, что и одиночный запрос: 404 для несуществующих фильма или пользователя,
+ * 400 для удаления лайка, которого нет. Отклонённая операция не отменяет остальные.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LikeBatchService {
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private static final String INSERT_SQL = """
+            MERGE INTO likes l
+            USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) AS s(film_id, user_id)
+            ON l.film_id = s.film_id AND l.user_id = s.user_id
+            WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (s.film_id, s.user_id)""";
+    private static final String DELETE_SQL = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+    private static final String COUNTER_SQL = "UPDATE films SET likes_count = likes_count + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final EventService eventService;
+    private final FilmPopularityIndex popularityIndex;
+    private final RecommendationEngine recommendationEngine;
+    private final ResourceVersions versions;
+    private final SecondLevelCacheEvictor cacheEvictor;
+
+    @Transactional
+    public ResponseEntity<List<LikeResultDto>> applyLikes(List<LikeOperationDto> operations) {
+        if (operations.size() > MAX_BATCH_SIZE) {
+            log.warn("Пакет из {} операций превышает лимит {}", operations.size(), MAX_BATCH_SIZE);
+            throw new ValidationException(
+                    "За один запрос можно передать не более %d операций".formatted(MAX_BATCH_SIZE));
+        }
+        log.debug("Пакетная запись {} операций с лайками", operations.size());
+
+        Set<Long> filmIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (LikeOperationDto operation : operations) {
+            if (operation.getFilmId() != null && operation.getUserId() != null) {
+                filmIds.add(operation.getFilmId());
+                userIds.add(operation.getUserId());
+            }
+        }
+        Set<Long> films = existing("SELECT id FROM films WHERE id IN (:ids)", filmIds);
+        Set<Long> users = existing("SELECT id FROM users WHERE id IN (:ids)", userIds);
+        Set<Like> initial = currentLikes(films, users);
+
+        Set<Like> likes = new HashSet<>(initial);
+        List<LikeResultDto> results = new ArrayList<>(operations.size());
+        List<LikeOperationDto> applied = new ArrayList<>();
+        for (LikeOperationDto operation : operations) {
+            LikeResultDto result = apply(operation, films, users, likes);
+            if (result.getStatus() == HttpStatus.OK.value()) {
+                applied.add(operation);
+            }
+            results.add(result);
+        }
+
+        List<Like> added = likes.stream().filter(like -> !initial.contains(like)).toList();
+        List<Like> removed = initial.stream().filter(like -> !likes.contains(like)).toList();
+        Map<Long, Integer> deltas = new HashMap<>();
+        // Счётчики меняются по числу действительно изменённых строк: параллельный одиночный запрос
+        // мог успеть добавить или удалить тот же лайк
+        int[] inserted = write(INSERT_SQL, added);
+        for (int i = 0; i < added.size(); i++) {
+            if (inserted[i] > 0) {
+                deltas.merge(added.get(i).filmId(), 1, Integer::sum);
+                recommendationEngine.addLike(added.get(i).filmId(), added.get(i).userId());
+            }
+        }
+        int[] deleted = write(DELETE_SQL, removed);
+        for (int i = 0; i < removed.size(); i++) {
+            if (deleted[i] > 0) {
+                deltas.merge(removed.get(i).filmId(), -1, Integer::sum);
+                recommendationEngine.removeLike(removed.get(i).filmId(), removed.get(i).userId());
+            }
+        }
+        updateCounters(deltas);
+
+        for (LikeOperationDto operation : applied) {
+            eventService.createEvent(operation.getUserId(), EventType.LIKE, operation.getOp(), operation.getFilmId());
+        }
+        log.info("Пакет лайков записан: операций {}, применено {}, добавлено {}, удалено {}",
+                operations.size(), applied.size(), added.size(), removed.size());
+        return ResponseEntity.ok(results);
+    }
+
+    private LikeResultDto apply(LikeOperationDto operation, Set<Long> films, Set<Long> users, Set<Like> likes) {
+        Long filmId = operation.getFilmId();
+        Long userId = operation.getUserId();
+        EventOperation op = operation.getOp();
+        if (filmId == null || userId == null || (op != EventOperation.ADD && op != EventOperation.REMOVE)) {
+            return result(operation, HttpStatus.BAD_REQUEST, "Нужны filmId, userId и op ADD или REMOVE");
+        }
+        if (!films.contains(filmId)) {
+            return result(operation, HttpStatus.NOT_FOUND, "Фильм с id " + filmId + " не найден");
+        }
+        if (!users.contains(userId)) {
+            return result(operation, HttpStatus.NOT_FOUND, "Пользователь с id " + userId + " не найден");
+        }
+        Like like = new Like(filmId, userId);
+        if (op == EventOperation.ADD) {
+            // Повторный лайк, как и в одиночном запросе, не ошибка
+            likes.add(like);
+        } else if (!likes.remove(like)) {
+            return result(operation, HttpStatus.BAD_REQUEST, "Пользователь не ставил лайк этому фильму");
+        }
+        return result(operation, HttpStatus.OK, null);
+    }
+
+    private void updateCounters(Map<Long, Integer> deltas) {
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(COUNTER_SQL, deltas.entrySet().stream()
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .toList());
+        versions.filmsChanged(deltas.keySet());
+        deltas.forEach((filmId, delta) -> {
+            cacheEvictor.evictFilm(filmId);
+            popularityIndex.changeLikes(filmId, delta);
+        });
+    }
+
+    private Set<Long> existing(String sql, Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(namedJdbcTemplate.queryForList(sql, Map.of("ids", ids), Long.class));
+    }
+
+    private Set<Like> currentLikes(Set<Long> films, Set<Long> users) {
+        Set<Like> likes = new HashSet<>();
+        if (films.isEmpty() || users.isEmpty()) {
+            return likes;
+        }
+        namedJdbcTemplate.query("SELECT film_id, user_id FROM likes WHERE film_id IN (:films) AND user_id IN (:users)",
+                Map.of("films", films, "users", users),
+                rs -> {
+                    likes.add(new Like(rs.getLong("film_id"), rs.getLong("user_id")));
+                });
+        return likes;
+    }
+
+    private int[] write(String sql, List<Like> likes) {
+        if (likes.isEmpty()) {
+            return new int[0];
+        }
+        return jdbcTemplate.batchUpdate(sql, likes.stream()
+                .map(like -> new Object[]{like.filmId(), like.userId()})
+                .toList());
+    }
+
+    private static LikeResultDto result(LikeOperationDto operation, HttpStatus status, String message) {
+        return new LikeResultDto(operation.getFilmId(), operation.getUserId(), operation.getOp(), status.value(),
+                message);
+    }
+
+    private record Like(long filmId, long userId) {
+    }
+}
@@ -4,7 +4,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.repository.MpaRepository;
 import ru.yandex.practicum.filmorate.dto.MpaDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.MpaMapper;
@@ -16,13 +15,13 @@ import java.util.List;
 @RequiredArgsConstructor
 @Service
 public class MpaService {
-    private final MpaRepository mpaRepository;
+    private final ReferenceDataCache referenceData;
     private final MpaMapper mpaMapper;
 
     public ResponseEntity<List<MpaDto>> getAllMpa() {
         log.debug("Запрос всех рейтингов");
 
-        List<MpaDto> mpa = mpaRepository.findAll().stream()
+        List<MpaDto> mpa = referenceData.allMpa().stream()
                 .map(mpaMapper::toMpaDto)
                 .toList();
 
@@ -33,7 +32,7 @@ public class MpaService {
     public ResponseEntity<MpaDto> getMpaById(Long id) {
         log.debug("Запрос рейтинга с ID: {}", id);
 
-        Mpa mpa = mpaRepository.findById(id)
+        Mpa mpa = referenceData.findMpa(id)
                 .orElseThrow(() -> new NotFoundException("Рейтинг с ID %s не найден".formatted(id)));
 
         log.info("Найден рейтинг: ID={}, Название={}", id, mpa.getName());
@@ -0,0 +1,290 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рекомендации на основе коллаборативной фильтрации по лайкам.
+ * Матрица «пользователь × фильм» хранится разреженно: для каждого пользователя отсортированный
+ * массив плотных индексов лайкнутых фильмов и для каждого фильма — массив лайкнувших его пользователей.
+ * Для пользователя выбираются {@link #NEIGHBOURS} самых похожих по мере Жаккара соседей, фильмы соседей
+ * получают сумму их сходств. Результат обрезается до {@code filmorate.recommendations.limit} фильмов
+ * и считается при первом запросе пользователя; он лежит в кэше ограниченного размера до изменения лайков
+ * затронутых пользователей.
+ */
+@Slf4j
+@Component
+public class RecommendationEngine {
+    static final int NEIGHBOURS = 10;
+    private static final int[] EMPTY = new int[0];
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> userIndex = new HashMap<>();
+    private final Map<Long, Integer> filmIndex = new HashMap<>();
+    private long[] userIds = new long[16];
+    private long[] filmIds = new long[16];
+    private int[][] userLikes = new int[16][];
+    private int[][] filmLikers = new int[16][];
+    private final int limit;
+    private final Cache<Long, List<Long>> cache;
+
+    public RecommendationEngine(JdbcTemplate jdbcTemplate,
+                                @Value("${filmorate.recommendations.limit:100}") int limit,
+                                @Value("${filmorate.recommendations.cache-size:10000}") long cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.limit = limit;
+        this.cache = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Long, List<Long>> likesByUser = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, film_id FROM likes", rs -> {
+            likesByUser.computeIfAbsent(rs.getLong("user_id"), id -> new ArrayList<>()).add(rs.getLong("film_id"));
+        });
+
+        lock.writeLock().lock();
+        try {
+            reset();
+            Map<Integer, List<Integer>> likersByFilm = new HashMap<>();
+            likesByUser.forEach((userId, films) -> {
+                int user = userSlot(userId);
+                int[] liked = films.stream().mapToInt(this::filmSlot).distinct().sorted().toArray();
+                userLikes[user] = liked;
+                for (int film : liked) {
+                    likersByFilm.computeIfAbsent(film, f -> new ArrayList<>()).add(user);
+                }
+            });
+            likersByFilm.forEach((film, users) ->
+                    filmLikers[film] = users.stream().mapToInt(Integer::intValue).sorted().toArray());
+            log.info("Матрица лайков перестроена: {} пользователей, {} фильмов", userIndex.size(), filmIndex.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает идентификаторы рекомендованных фильмов в порядке убывания оценки.
+     */
+    public List<Long> recommend(Long userId) {
+        List<Long> cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        lock.readLock().lock();
+        try {
+            Integer user = userIndex.get(userId);
+            List<Long> result = user != null ? compute(user) : List.of();
+            // Запись в кэш под блокировкой чтения: инвалидация берёт блокировку записи и не пересекается с ней
+            cache.put(userId, result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addLike(Long filmId, Long userId) {
+        AfterCommit.run(() -> update(() -> {
+            int user = userSlot(userId);
+            int film = filmSlot(filmId);
+            invalidateNeighbourhood(user, film);
+            userLikes[user] = insert(userLikes[user], film);
+            filmLikers[film] = insert(filmLikers[film], user);
+        }));
+    }
+
+    public void removeLike(Long filmId, Long userId) {
+        AfterCommit.run(() -> update(() -> {
+            Integer user = userIndex.get(userId);
+            Integer film = filmIndex.get(filmId);
+            if (user == null || film == null) {
+                return;
+            }
+            invalidateNeighbourhood(user, film);
+            userLikes[user] = remove(userLikes[user], film);
+            filmLikers[film] = remove(filmLikers[film], user);
+        }));
+    }
+
+    public void removeUser(Long userId) {
+        AfterCommit.run(() -> update(() -> {
+            Integer user = userIndex.get(userId);
+            if (user == null) {
+                return;
+            }
+            invalidateNeighbourhood(user, -1);
+            for (int film : likesOf(user)) {
+                filmLikers[film] = remove(filmLikers[film], user);
+            }
+            userLikes[user] = EMPTY;
+            cache.invalidate(userId);
+        }));
+    }
+
+    public void removeFilm(Long filmId) {
+        AfterCommit.run(() -> update(() -> {
+            Integer film = filmIndex.get(filmId);
+            if (film == null) {
+                return;
+            }
+            for (int user : likersOf(film)) {
+                invalidateNeighbourhood(user, -1);
+                userLikes[user] = remove(userLikes[user], film);
+            }
+            filmLikers[film] = EMPTY;
+        }));
+    }
+
+    public void clear() {
+        AfterCommit.run(() -> update(this::reset));
+    }
+
+    private List<Long> compute(int user) {
+        int[] liked = likesOf(user);
+        if (liked.length == 0) {
+            return List.of();
+        }
+        Map<Integer, Integer> common = new HashMap<>();
+        for (int film : liked) {
+            for (int other : likersOf(film)) {
+                if (other != user) {
+                    common.merge(other, 1, Integer::sum);
+                }
+            }
+        }
+
+        PriorityQueue<Neighbour> neighbours = new PriorityQueue<>(Comparator.comparingDouble(Neighbour::similarity));
+        common.forEach((other, intersection) -> {
+            double similarity = (double) intersection / (liked.length + likesOf(other).length - intersection);
+            neighbours.add(new Neighbour(other, similarity));
+            if (neighbours.size() > NEIGHBOURS) {
+                neighbours.poll();
+            }
+        });
+
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Neighbour neighbour : neighbours) {
+            for (int film : likesOf(neighbour.user())) {
+                if (Arrays.binarySearch(liked, film) < 0) {
+                    scores.merge(film, neighbour.similarity(), Double::sum);
+                }
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(entry -> filmIds[entry.getKey()]))
+                .limit(limit)
+                .map(entry -> filmIds[entry.getKey()])
+                .toList();
+    }
+
+    /**
+     * Сбрасывает кэш пользователя и всех, с кем у него есть общие лайки (в том числе через фильм {@code film}):
+     * только у них меняются соседи и оценки.
+     */
+    private void invalidateNeighbourhood(int user, int film) {
+        cache.invalidate(userIds[user]);
+        for (int liked : likesOf(user)) {
+            for (int other : likersOf(liked)) {
+                cache.invalidate(userIds[other]);
+            }
+        }
+        if (film >= 0) {
+            for (int other : likersOf(film)) {
+                cache.invalidate(userIds[other]);
+            }
+        }
+    }
+
+    private void update(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reset() {
+        userIndex.clear();
+        filmIndex.clear();
+        userIds = new long[16];
+        filmIds = new long[16];
+        userLikes = new int[16][];
+        filmLikers = new int[16][];
+        cache.invalidateAll();
+    }
+
+    private int userSlot(Long userId) {
+        return userIndex.computeIfAbsent(userId, id -> {
+            int slot = userIndex.size();
+            if (slot == userIds.length) {
+                userIds = Arrays.copyOf(userIds, slot * 2);
+                userLikes = Arrays.copyOf(userLikes, slot * 2);
+            }
+            userIds[slot] = id;
+            return slot;
+        });
+    }
+
+    private int filmSlot(Long filmId) {
+        return filmIndex.computeIfAbsent(filmId, id -> {
+            int slot = filmIndex.size();
+            if (slot == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, slot * 2);
+                filmLikers = Arrays.copyOf(filmLikers, slot * 2);
+            }
+            filmIds[slot] = id;
+            return slot;
+        });
+    }
+
+    private int[] likesOf(int user) {
+        return userLikes[user] != null ? userLikes[user] : EMPTY;
+    }
+
+    private int[] likersOf(int film) {
+        return filmLikers[film] != null ? filmLikers[film] : EMPTY;
+    }
+
+    private static int[] insert(int[] sorted, int value) {
+        sorted = sorted != null ? sorted : EMPTY;
+        int position = Arrays.binarySearch(sorted, value);
+        if (position >= 0) {
+            return sorted;
+        }
+        position = -position - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(sorted, position, result, position + 1, sorted.length - position);
+        return result;
+    }
+
+    private static int[] remove(int[] sorted, int value) {
+        sorted = sorted != null ? sorted : EMPTY;
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, sorted.length - position - 1);
+        return result;
+    }
+
+    private record Neighbour(int user, double similarity) {
+    }
+}
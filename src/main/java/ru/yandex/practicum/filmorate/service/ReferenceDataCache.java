@@ -0,0 +1,191 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.monitoring.CacheHitMeter;
+import ru.yandex.practicum.filmorate.repository.DirectorRepository;
+import ru.yandex.practicum.filmorate.repository.GenreRepository;
+import ru.yandex.practicum.filmorate.repository.MpaRepository;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Кэш справочников. Жанры и рейтинги MPA — статичные данные из {@code data.sql}: они загружаются при старте
+ * в неизменяемые массивы, индексированные по id, и при промахе дочитываются из базы копированием массива.
+ * Режиссёры меняются через API, поэтому хранятся в LRU-кэше, из которого их вытесняют изменения режиссёров.
+ * В кэш кладутся копии загруженных сущностей: сущность, прочитанная внутри транзакции, принадлежит её сессии
+ * и не должна переходить в другие потоки. Возвращаемые из кэша сущности отсоединены от сессии
+ * и используются только как ссылки и для чтения.
+ * Попадания и промахи публикуются как метрики {@code filmorate.cache.*}.
+ */
+@Slf4j
+@Component
+public class ReferenceDataCache {
+    private static final int MAX_DENSE_ID = 1024;
+    private static final int DIRECTORS_CAPACITY = 1000;
+    private static final int EVICTION_STRIPES = 64;
+
+    private final GenreRepository genreRepository;
+    private final MpaRepository mpaRepository;
+    private final DirectorRepository directorRepository;
+    private final CacheHitMeter genreHits;
+    private final CacheHitMeter mpaHits;
+    private final CacheHitMeter directorHits;
+
+    private volatile Genre[] genres = new Genre[0];
+    private volatile Mpa[] mpa = new Mpa[0];
+    private final Map<Long, Director> directors = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Director> eldest) {
+            return size() > DIRECTORS_CAPACITY;
+        }
+    };
+    private final AtomicLongArray directorEvictions = new AtomicLongArray(EVICTION_STRIPES);
+
+    public ReferenceDataCache(GenreRepository genreRepository, MpaRepository mpaRepository,
+                              DirectorRepository directorRepository, MeterRegistry meterRegistry) {
+        this.genreRepository = genreRepository;
+        this.mpaRepository = mpaRepository;
+        this.directorRepository = directorRepository;
+        this.genreHits = new CacheHitMeter(meterRegistry, "reference.genres");
+        this.mpaHits = new CacheHitMeter(meterRegistry, "reference.mpa");
+        this.directorHits = new CacheHitMeter(meterRegistry, "reference.directors");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        genres = index(genreRepository.findAll().stream().map(ReferenceDataCache::copy).toList(),
+                Genre::getId, Genre[]::new);
+        mpa = index(mpaRepository.findAll().stream().map(ReferenceDataCache::copy).toList(),
+                Mpa::getId, Mpa[]::new);
+        log.info("Справочники загружены: {} жанров, {} рейтингов", allGenres().size(), allMpa().size());
+    }
+
+    public Optional<Genre> findGenre(Long id) {
+        Genre cached = lookup(genres, id);
+        if (cached != null || id == null) {
+            genreHits.hit();
+            return Optional.ofNullable(cached);
+        }
+        genreHits.miss();
+        Optional<Genre> loaded = genreRepository.findById(id);
+        loaded.ifPresent(this::rememberGenre);
+        return loaded;
+    }
+
+    public Optional<Mpa> findMpa(Long id) {
+        Mpa cached = lookup(mpa, id);
+        if (cached != null || id == null) {
+            mpaHits.hit();
+            return Optional.ofNullable(cached);
+        }
+        mpaHits.miss();
+        Optional<Mpa> loaded = mpaRepository.findById(id);
+        loaded.ifPresent(this::rememberMpa);
+        return loaded;
+    }
+
+    public List<Genre> allGenres() {
+        return Arrays.stream(genres).filter(Objects::nonNull).toList();
+    }
+
+    public List<Mpa> allMpa() {
+        return Arrays.stream(mpa).filter(Objects::nonNull).toList();
+    }
+
+    public Optional<Director> findDirector(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        synchronized (directors) {
+            Director cached = directors.get(id);
+            if (cached != null) {
+                directorHits.hit();
+                return Optional.of(cached);
+            }
+        }
+        directorHits.miss();
+        long generation = directorEvictions.get(stripe(id));
+        Optional<Director> loaded = directorRepository.findById(id);
+        loaded.ifPresent(director -> {
+            synchronized (directors) {
+                // Вытеснение во время чтения: прочитанная строка могла устареть, в кэш её не кладём
+                if (directorEvictions.get(stripe(id)) == generation) {
+                    directors.put(director.getId(), copy(director));
+                }
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Вытесняет режиссёра сразу и повторно после фиксации транзакции, чтобы параллельное чтение
+     * не вернуло в кэш прежнее имя. Каждое вытеснение увеличивает поколение полосы id, и промах,
+     * начавший чтение до вытеснения, не кладёт свой результат в кэш.
+     */
+    public void evictDirector(Long id) {
+        removeDirector(id);
+        AfterCommit.run(() -> removeDirector(id));
+    }
+
+    private void removeDirector(Long id) {
+        synchronized (directors) {
+            directorEvictions.incrementAndGet(stripe(id));
+            directors.remove(id);
+        }
+    }
+
+    private static int stripe(Long id) {
+        return Long.hashCode(id) & (EVICTION_STRIPES - 1);
+    }
+
+    private synchronized void rememberGenre(Genre genre) {
+        genres = with(genres, genre.getId(), copy(genre));
+    }
+
+    private synchronized void rememberMpa(Mpa rating) {
+        mpa = with(mpa, rating.getId(), copy(rating));
+    }
+
+    private static Genre copy(Genre genre) {
+        return new Genre(genre.getId(), genre.getName());
+    }
+
+    private static Mpa copy(Mpa rating) {
+        return new Mpa(rating.getId(), rating.getName());
+    }
+
+    private static Director copy(Director director) {
+        return new Director(director.getId(), director.getName());
+    }
+
+    private static <T> T lookup(T[] table, Long id) {
+        return id != null && id >= 0 && id < table.length ? table[id.intValue()] : null;
+    }
+
+    private static <T> T[] with(T[] table, Long id, T value) {
+        if (id == null || id < 0 || id >= MAX_DENSE_ID) {
+            return table;
+        }
+        T[] copy = Arrays.copyOf(table, Math.max(table.length, id.intValue() + 1));
+        copy[id.intValue()] = value;
+        return copy;
+    }
+
+    private static <T> T[] index(List<T> items, Function<T, Long> id, IntFunction<T[]> factory) {
+        T[] table = factory.apply(0);
+        for (T item : items) {
+            table = with(table, id.apply(item), item);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.GenreDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Проверка идентификаторов жанров и рейтингов MPA без обращения к базе. Допустимые id хранятся в битовых
+ * множествах, которые загружаются при старте и периодически перечитываются. Id, которого нет во множестве,
+ * перепроверяется одним запросом: новые строки справочников принимаются без перезапуска,
+ * а запросы тратятся только на промахи.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceIdValidator {
+    // Id больше порога проверяются запросом, чтобы не раздувать множество
+    private static final int MAX_INDEXED_ID = 1 << 20;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile BitSet genreIds = new BitSet();
+    private volatile BitSet mpaIds = new BitSet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${filmorate.reference.refresh-interval-ms:300000}",
+            initialDelayString = "${filmorate.reference.refresh-interval-ms:300000}")
+    public void refresh() {
+        genreIds = load("SELECT id FROM genres");
+        mpaIds = load("SELECT id FROM mpa_rating");
+        log.debug("Допустимые id справочников обновлены: {} жанров, {} рейтингов",
+                genreIds.cardinality(), mpaIds.cardinality());
+    }
+
+    public boolean isGenre(Long id) {
+        if (contains(genreIds, id)) {
+            return true;
+        }
+        if (!exists("SELECT COUNT(*) FROM genres WHERE id = ?", id)) {
+            return false;
+        }
+        rememberGenre(id);
+        return true;
+    }
+
+    public boolean isMpa(Long id) {
+        if (contains(mpaIds, id)) {
+            return true;
+        }
+        if (!exists("SELECT COUNT(*) FROM mpa_rating WHERE id = ?", id)) {
+            return false;
+        }
+        rememberMpa(id);
+        return true;
+    }
+
+    public void requireMpa(Long id) {
+        if (!isMpa(id)) {
+            log.warn("Рейтинг MPA с ID {} не существует", id);
+            throw new NotFoundException("Рейтинг MPA с ID %s не существует".formatted(id));
+        }
+    }
+
+    public void requireGenres(Collection<GenreDto> genres) {
+        if (genres == null) {
+            return;
+        }
+        for (GenreDto genre : genres) {
+            if (!isGenre(genre.getId())) {
+                log.warn("Жанр с ID {} не существует", genre.getId());
+                throw new NotFoundException("Жанр с ID %s не существует".formatted(genre.getId()));
+            }
+        }
+    }
+
+    private synchronized void rememberGenre(Long id) {
+        if (isIndexable(id)) {
+            genreIds = with(genreIds, id);
+        }
+    }
+
+    private synchronized void rememberMpa(Long id) {
+        if (isIndexable(id)) {
+            mpaIds = with(mpaIds, id);
+        }
+    }
+
+    private BitSet load(String sql) {
+        BitSet ids = new BitSet();
+        jdbcTemplate.query(sql, rs -> {
+            long id = rs.getLong(1);
+            if (isIndexable(id)) {
+                ids.set((int) id);
+            }
+        });
+        return ids;
+    }
+
+    private boolean exists(String sql, Long id) {
+        if (id == null || id <= 0) {
+            return false;
+        }
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Множества только заменяются целиком, поэтому читатели не видят частично изменённых данных.
+     */
+    private static BitSet with(BitSet ids, long id) {
+        BitSet copy = (BitSet) ids.clone();
+        copy.set((int) id);
+        return copy;
+    }
+
+    private static boolean contains(BitSet ids, Long id) {
+        return id != null && isIndexable(id) && ids.get(id.intValue());
+    }
+
+    private static boolean isIndexable(long id) {
+        return id >= 0 && id < MAX_INDEXED_ID;
+    }
+}
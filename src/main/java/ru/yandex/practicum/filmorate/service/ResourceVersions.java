@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Версии фильмов, пользователей и отзывов для условных GET-запросов. Версия хранится в столбце {@code version}
+ * и увеличивается каждым изменением, которое видно в ответе ресурса: отзывы входят в ответ фильма,
+ * имена друзей — в ответ пользователя, имена режиссёров — в ответы их фильмов.
+ * <p>
+ * Столбец не отображается на сущности и меняется через JDBC: Hibernate его не перезаписывает,
+ * а увеличение версии не сбрасывает кэш второго уровня.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResourceVersions {
+    private static final String VOTED_REVIEWS = """
+            SELECT rr.review_id FROM review_rating rr JOIN review_likes l ON l.review_id = rr.id
+            WHERE l.user_id = ?
+            UNION
+            SELECT rr.review_id FROM review_rating rr JOIN review_dislikes d ON d.review_id = rr.id
+            WHERE d.user_id = ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<Long> film(Long filmId) {
+        return version("SELECT version FROM films WHERE id = ?", filmId);
+    }
+
+    public Optional<Long> user(Long userId) {
+        return version("SELECT version FROM users WHERE id = ?", userId);
+    }
+
+    public Optional<Long> review(Long reviewId) {
+        return version("SELECT version FROM reviews WHERE id = ?", reviewId);
+    }
+
+    public void filmChanged(Long filmId) {
+        jdbcTemplate.update("UPDATE films SET version = version + 1 WHERE id = ?", filmId);
+    }
+
+    public void filmsChanged(Collection<Long> filmIds) {
+        jdbcTemplate.batchUpdate("UPDATE films SET version = version + 1 WHERE id = ?",
+                filmIds.stream().map(id -> new Object[]{id}).toList());
+    }
+
+    /**
+     * Отзыв изменился: меняются и его ответ, и ответ фильма, в который он входит.
+     */
+    public void reviewChanged(Long reviewId) {
+        jdbcTemplate.update("UPDATE reviews SET version = version + 1 WHERE id = ?", reviewId);
+        jdbcTemplate.update("""
+                UPDATE films SET version = version + 1
+                WHERE id = (SELECT film_id FROM reviews WHERE id = ?)""", reviewId);
+    }
+
+    public void directorChanged(Long directorId) {
+        jdbcTemplate.update("""
+                UPDATE films SET version = version + 1
+                WHERE id IN (SELECT film_id FROM film_directors WHERE director_id = ?)""", directorId);
+    }
+
+    public void userChanged(Long userId) {
+        jdbcTemplate.update("UPDATE users SET version = version + 1 WHERE id = ?", userId);
+    }
+
+    /**
+     * Имя пользователя изменилось: оно входит в списки друзей тех, кто добавил его в друзья.
+     */
+    public void userRenamed(Long userId) {
+        jdbcTemplate.update("""
+                UPDATE users SET version = version + 1
+                WHERE id IN (SELECT user_id FROM user_friends WHERE friend_id = ?)""", userId);
+    }
+
+    /**
+     * Вызывается до удаления пользователя, пока его дружба, лайки, отзывы и голоса за отзывы ещё в базе.
+     * Снятые голоса меняют полезность отзывов, а с ней ответы отзывов и их фильмов.
+     */
+    public void userDeleted(Long userId) {
+        userRenamed(userId);
+        jdbcTemplate.update("UPDATE reviews SET version = version + 1 WHERE id IN (" + VOTED_REVIEWS + ")",
+                userId, userId);
+        jdbcTemplate.update("""
+                UPDATE films SET version = version + 1
+                WHERE id IN (SELECT film_id FROM likes WHERE user_id = ?
+                             UNION
+                             SELECT film_id FROM reviews WHERE user_id = ?
+                             UNION
+                             SELECT film_id FROM reviews WHERE id IN (""" + VOTED_REVIEWS + "))",
+                userId, userId, userId, userId);
+    }
+
+    /**
+     * Отвечает 304 по совпавшему {@code If-None-Match}, не загружая ресурс; иначе загружает его
+     * и дополняет ответ сильным ETag. Версия читается до загрузки, поэтому ETag никогда не новее тела ответа.
+     */
+    <T> ResponseEntity<T> conditional(Long id, long version, String ifNoneMatch, Supplier<ResponseEntity<T>> loader) {
+        String eTag = "\"%d-%d\"".formatted(id, version);
+        if (matches(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        ResponseEntity<T> response = loader.get();
+        return ResponseEntity.status(response.getStatusCode()).eTag(eTag).body(response.getBody());
+    }
+
+    private Optional<Long> version(String sql, Long id) {
+        return jdbcTemplate.queryForList(sql, Long.class, id).stream().findFirst();
+    }
+
+    /**
+     * Для {@code If-None-Match} применяется слабое сравнение: префикс {@code W/} не учитывается.
+     */
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.service;
 
 import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.repository.*;
@@ -14,11 +16,11 @@ import ru.yandex.practicum.filmorate.mapper.ReviewMapper;
 import ru.yandex.practicum.filmorate.model.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Slf4j
 @RequiredArgsConstructor
 @Service
+@Timed(value = "filmorate.service", histogram = true)
 public class ReviewService {
     private final ReviewRepository reviewRepository;
     private final ReviewRatingRepository ratingRepository;
@@ -26,6 +28,8 @@ public class ReviewService {
     private final ReviewMapper reviewMapper;
     private final EventService eventService;
     private final FilmRepository filmRepository;
+    private final ResourceVersions versions;
+    private final SecondLevelCacheEvictor cacheEvictor;
 
     @Transactional
     public ReviewResponseDto addReview(ChangeReviewDto dto) {
@@ -48,6 +52,7 @@ public class ReviewService {
         rating.setUsersLikes(new HashSet<>());
         rating.setUsersDislikes(new HashSet<>());
         ratingRepository.save(rating);
+        versions.filmChanged(film.getId());
 
         eventService.createEvent(
                 savedReview.getUser().getId(),
@@ -65,13 +70,21 @@ public class ReviewService {
         Review review = reviewRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Отзыв с ID %s не найден".formatted(id)));
 
-        ratingRepository.deleteById(id);
+        // Оценка отзыва вместе с голосами удаляется каскадно
         reviewRepository.delete(review);
+        versions.filmChanged(review.getFilm().getId());
         eventService.createEvent(review.getUser().getId(), EventType.REVIEW, EventOperation.REMOVE, review.getId());
 
         return ResponseEntity.ok().build();
     }
 
+    @Transactional
+    public ResponseEntity<ReviewResponseDto> getReviewById(Long id, String ifNoneMatch) {
+        long version = versions.review(id)
+                .orElseThrow(() -> new NotFoundException("Отзыв с ID %s не найден".formatted(id)));
+        return versions.conditional(id, version, ifNoneMatch, () -> getReviewById(id));
+    }
+
     public ResponseEntity<ReviewResponseDto> getReviewById(Long id) {
         Review review = reviewRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Отзыв с ID %s не найден".formatted(id)));
@@ -84,64 +97,45 @@ public class ReviewService {
     @Transactional
     public ResponseEntity<Void> addLikeOnReview(Long id, Long userId) {
         log.debug("Попытка добавить лайк на отзыв: ID={}", id);
-        ReviewRating reviewRating = ratingRepository.findByReviewId(id).orElseThrow(() -> {
-            log.error("Отзыв не найден: ID={}", id);
-            return new NotFoundException("Отзыв с id " + id + " не найден");
-        });
-
-        User user = userRepository.findById(userId).orElseThrow(() -> {
-            log.error("Пользователь не найден: ID={}", userId);
-            return new NotFoundException("Пользователь с id " + userId + " не найден");
-        });
-        reviewRating.getUsersLikes().add(user);
-        reviewRating.getUsersDislikes().remove(user);
-
-        ratingRepository.save(reviewRating);
+        checkReviewAndUserExist(id, userId);
+
+        // Лайк заменяет дизлайк того же пользователя
+        int delta = ratingRepository.insertLike(id, userId) + ratingRepository.deleteDislike(id, userId);
+        if (delta != 0) {
+            reviewRepository.changeUseful(id, delta);
+            cacheEvictor.evictReview(id);
+            versions.reviewChanged(id);
+        }
         return ResponseEntity.ok().build();
     }
 
     @Transactional
     public ResponseEntity<Void> addDislikeOnReview(Long id, Long userId) {
         log.debug("Попытка добавить дизлайк на отзыв: ID={}", id);
-        ReviewRating reviewRating = ratingRepository.findByReviewId(id).orElseThrow(() -> {
-            log.error("Отзыв не найден: ID={}", id);
-            return new NotFoundException("Отзыв с id " + id + " не найден");
-        });
-
-        User user = userRepository.findById(userId).orElseThrow(() -> {
-            log.error("Пользователь не найден: ID={}", userId);
-            return new NotFoundException("Пользователь с id " + userId + " не найден");
-        });
-        reviewRating.getUsersDislikes().add(user);
-        reviewRating.getUsersLikes().remove(user);
-
-        ratingRepository.save(reviewRating);
+        checkReviewAndUserExist(id, userId);
 
+        int delta = ratingRepository.insertDislike(id, userId) + ratingRepository.deleteLike(id, userId);
+        if (delta != 0) {
+            reviewRepository.changeUseful(id, -delta);
+            cacheEvictor.evictReview(id);
+            versions.reviewChanged(id);
+        }
         return ResponseEntity.ok().build();
     }
 
     @Transactional
     public ResponseEntity<Void> deleteLikeFromReview(Long id, Long userId) {
         log.debug("Попытка удалить лайк с отзыва: ID={}", id);
+        checkReviewAndUserExist(id, userId);
 
-        ReviewRating reviewRating = ratingRepository.findByReviewId(id)
-                .orElseThrow(() -> {
-                    log.error("Отзыв не найден: ID={}", id);
-                    return new NotFoundException("Отзыв с id " + id + " не найден");
-                });
-
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> {
-                    log.error("Пользователь не найден: ID={}", userId);
-                    return new NotFoundException("Пользователь с id " + userId + " не найден");
-                });
-
-        if (!reviewRating.getUsersLikes().remove(user)) {
+        if (ratingRepository.deleteLike(id, userId) == 0) {
             log.warn("Пользователь {} не ставил лайк отзыву {}", userId, id);
             throw new ValidationException("Пользователь не ставил лайк этому отзыву");
         }
+        reviewRepository.changeUseful(id, -1);
+        cacheEvictor.evictReview(id);
+        versions.reviewChanged(id);
 
-        ratingRepository.save(reviewRating);
         log.info("Лайк пользователя {} удален с отзыва {}", userId, id);
         return ResponseEntity.ok().build();
     }
@@ -149,49 +143,49 @@ public class ReviewService {
     @Transactional
     public ResponseEntity<Void> deleteDislikeFromReview(Long id, Long userId) {
         log.debug("Попытка удалить лайк с отзыва: ID={}", id);
+        checkReviewAndUserExist(id, userId);
 
-        ReviewRating reviewRating = ratingRepository.findByReviewId(id)
-                .orElseThrow(() -> {
-                    log.error("Отзыв не найден: ID={}", id);
-                    return new NotFoundException("Отзыв с id " + id + " не найден");
-                });
-
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> {
-                    log.error("Пользователь не найден: ID={}", userId);
-                    return new NotFoundException("Пользователь с id " + userId + " не найден");
-                });
-
-        if (!reviewRating.getUsersDislikes().remove(user)) {
+        if (ratingRepository.deleteDislike(id, userId) == 0) {
             log.warn("Пользователь {} не ставил дилзайк отзыву {}", userId, id);
             throw new ValidationException("Пользователь не ставил дилзайк этому отзыву");
         }
+        reviewRepository.changeUseful(id, 1);
+        cacheEvictor.evictReview(id);
+        versions.reviewChanged(id);
 
-        ratingRepository.save(reviewRating);
         log.info("Дизлайк пользователя {} удален с отзыва {}", userId, id);
         return ResponseEntity.ok().build();
     }
 
     public ResponseEntity<Set<ReviewResponseDto>> getReviewsToFilm(Long filmId, int count) {
+        return getReviewsToFilm(filmId, count, null);
+    }
+
+    /**
+     * Отзывы в порядке убывания полезности. Для прокрутки передаётся идентификатор последнего
+     * полученного отзыва: выборка продолжается с его текущей позиции по индексу (useful, id).
+     */
+    public ResponseEntity<Set<ReviewResponseDto>> getReviewsToFilm(Long filmId, int count, Long after) {
         log.debug("Попытка получить все отзывы на фильм с ID={}", filmId);
 
-        Set<ReviewResponseDto> collect;
-        if (filmId == null) {
-            collect = reviewRepository.findAll().stream()
-                    .map(reviewMapper::toReviewDto)
-                    .sorted(Comparator.comparing(ReviewResponseDto::getUseful).reversed())
-                    .limit(count)
-                    .collect(Collectors.toCollection(LinkedHashSet::new));
-        } else {
-            collect = reviewRepository.findAllByFilmId(filmId).orElse(new HashSet<>()).stream()
-                    .map(reviewMapper::toReviewDto)
-                    .sorted(Comparator.comparing(ReviewResponseDto::getUseful).reversed())
-                    .limit(count)
-                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (count <= 0) {
+            log.warn("Некорректный параметр count: {}", count);
+            throw new ValidationException("Параметр count должен быть положительным числом.");
+        }
+        int afterUseful = Integer.MAX_VALUE;
+        long afterId = 0;
+        if (after != null) {
+            afterUseful = reviewRepository.findUsefulById(after)
+                    .orElseThrow(() -> new NotFoundException("Отзыв с ID %s не найден".formatted(after)));
+            afterId = after;
         }
 
-        log.debug("Возвращено {} отзывов", collect.size());
-        return ResponseEntity.ok(collect);
+        List<ReviewResponseDto> reviews = filmId == null
+                ? reviewRepository.findTopDtos(afterUseful, afterId, Limit.of(count))
+                : reviewRepository.findTopDtosByFilmId(filmId, afterUseful, afterId, Limit.of(count));
+
+        log.debug("Возвращено {} отзывов", reviews.size());
+        return ResponseEntity.ok(new LinkedHashSet<>(reviews));
     }
 
     @Transactional
@@ -213,6 +207,7 @@ public class ReviewService {
         }
 
         reviewRepository.save(review);
+        versions.reviewChanged(reviewId);
         eventService.createEvent(review.getUser().getId(), EventType.REVIEW, EventOperation.UPDATE, review.getId());
 
         log.info("Отзыв с ID %s успешно обновлен".formatted(reviewId));
@@ -235,4 +230,15 @@ public class ReviewService {
         reviewRepository.deleteAll();
         log.info("Все отзывы удалены");
     }
-}
\ No newline at end of file
+
+    private void checkReviewAndUserExist(Long id, Long userId) {
+        if (!reviewRepository.existsById(id)) {
+            log.error("Отзыв не найден: ID={}", id);
+            throw new NotFoundException("Отзыв с id " + id + " не найден");
+        }
+        if (!userRepository.existsById(userId)) {
+            log.error("Пользователь не найден: ID={}", userId);
+            throw new NotFoundException("Пользователь с id " + userId + " не найден");
+        }
+    }
+}
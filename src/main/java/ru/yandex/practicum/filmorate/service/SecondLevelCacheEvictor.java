@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Cache;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Review;
+
+/**
+ * Сброс регионов кэша второго уровня, которые устаревают без ведома Hibernate: отзывы удаляются каскадом
+ * в базе вместе с пользователем или фильмом, связи фильмов с режиссёром — вместе с режиссёром,
+ * а счётчики лайков и полезность отзывов меняются нативными запросами.
+ * Регион сбрасывается сразу и повторно после фиксации транзакции, чтобы параллельное чтение не вернуло
+ * в кэш удалённые строки. При выключенном кэше вызовы ничего не делают.
+ */
+@Component
+@RequiredArgsConstructor
+public class SecondLevelCacheEvictor {
+    private static final String FILM_DIRECTORS_ROLE = Film.class.getName() + ".directors";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public void evictReviews() {
+        evict(() -> cache().evictEntityData(Review.class));
+    }
+
+    public void evictReview(Long reviewId) {
+        evict(() -> cache().evictEntityData(Review.class, reviewId));
+    }
+
+    public void evictFilm(Long filmId) {
+        evict(() -> cache().evictEntityData(Film.class, filmId));
+    }
+
+    public void evictFilmDirectors() {
+        evict(() -> cache().evictCollectionData(FILM_DIRECTORS_ROLE));
+    }
+
+    private void evict(Runnable eviction) {
+        eviction.run();
+        AfterCommit.run(eviction);
+    }
+
+    private Cache cache() {
+        return entityManagerFactory.getCache().unwrap(Cache.class);
+    }
+}
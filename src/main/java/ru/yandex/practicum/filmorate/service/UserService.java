@@ -1,12 +1,16 @@
 package ru.yandex.practicum.filmorate.service;
 
 import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.repository.FilmRepository;
+import ru.yandex.practicum.filmorate.repository.ReviewRepository;
 import ru.yandex.practicum.filmorate.repository.UserRepository;
 import ru.yandex.practicum.filmorate.dto.*;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
@@ -19,13 +23,22 @@ import java.util.*;
 @Slf4j
 @RequiredArgsConstructor
 @Service
+@Timed(value = "filmorate.service", histogram = true)
 public class UserService {
     private final UserRepository userRepository;
     private final FilmRepository filmRepository;
+    private final ReviewRepository reviewRepository;
     private final UserMapper userMapper;
     private final FilmService filmService;
     private final EventService eventService;
+    private final FilmPopularityIndex popularityIndex;
+    private final RecommendationEngine recommendationEngine;
+    private final JsonArrayStreamer jsonArrayStreamer;
+    private final FriendTimeline friendTimeline;
+    private final SecondLevelCacheEvictor cacheEvictor;
+    private final ResourceVersions versions;
 
+    @Transactional
     public ResponseEntity<List<UserResponseDto>> getAllUsers() {
         log.debug("Запрос всех пользователей");
         List<UserResponseDto> users = userRepository.findAll().stream()
@@ -35,20 +48,33 @@ public class UserService {
         return ResponseEntity.ok(users);
     }
 
+    @Transactional
+    public ResponseEntity<List<UserResponseDto>> getAllUsers(Long after, Integer limit) {
+        if (after == null && limit == null) {
+            return getAllUsers();
+        }
+        log.debug("Запрос страницы пользователей после ID={}, limit={}", after, limit);
+        List<UserResponseDto> users = userMapper.toUserDtoList(
+                userRepository.findByIdGreaterThanOrderByIdAsc(KeysetPage.after(after), KeysetPage.limit(limit)));
+        log.info("Возвращено {} пользователей", users.size());
+        return ResponseEntity.ok(users);
+    }
+
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        log.debug("Потоковая выгрузка всех пользователей");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonArrayStreamer.stream(userRepository::streamAll, userMapper::toUserDtoList));
+    }
+
     @Transactional
     public ResponseEntity<UserResponseDto> createUser(ChangeUserDto user) {
         log.debug("Создание нового пользователя: email={}, login={}", user.getEmail(), user.getLogin());
-        List<User> allUsers = userRepository.findAll().stream()
-                .toList();
-        boolean emailExists = allUsers.stream()
-                .anyMatch(u -> u.getEmail().equalsIgnoreCase(user.getEmail()));
-        if (emailExists) {
+        if (userRepository.existsByEmailIgnoreCase(user.getEmail())) {
             log.warn("Этот имейл уже используется: {}", user.getEmail());
             throw new ValidationException("Этот имейл уже используется");
         }
-        boolean loginExists = allUsers.stream()
-                .anyMatch(u -> u.getLogin().equalsIgnoreCase(user.getLogin()));
-        if (loginExists) {
+        if (userRepository.existsByLoginIgnoreCase(user.getLogin())) {
             log.warn("Этот логин уже используется: {}", user.getLogin());
             throw new ValidationException("Этот логин уже используется");
         }
@@ -67,25 +93,26 @@ public class UserService {
     @Transactional
     public ResponseEntity<UserResponseDto> updateUser(ChangeUserDto user) {
         log.debug("Обновление существующего пользователя с ID {}", user.getId());
-        List<User> allUsers = userRepository.findAll().stream()
-                .toList();
-        User updatedUser = allUsers.stream()
-                .filter(u -> Objects.equals(u.getId(), user.getId()))
-                .findFirst()
+        if (user.getId() == null) {
+            throw new NotFoundException("Пользователь с id null не найден");
+        }
+        User updatedUser = userRepository.findById(user.getId())
                 .orElseThrow(() -> {
                     log.error("Пользователь с ID {} не найден для обновления", user.getId());
                     return new NotFoundException("Пользователь с id " + user.getId() + " не найден");
                 });
 
         if (user.getLogin() != null && !updatedUser.getLogin().equals(user.getLogin())) {
+            if (userRepository.existsByLoginIgnoreCaseAndIdNot(user.getLogin(), user.getId())) {
+                log.warn("Этот логин уже используется: {}", user.getLogin());
+                throw new ValidationException("Этот логин уже используется");
+            }
             log.debug("Обновление логина пользователя с {} на {}", updatedUser.getLogin(), user.getLogin());
             updatedUser.setLogin(user.getLogin());
         }
 
         if (user.getEmail() != null && !updatedUser.getEmail().equals(user.getEmail())) {
-            boolean emailExists = allUsers.stream()
-                    .anyMatch(u -> u.getEmail().equals(user.getEmail()));
-            if (emailExists) {
+            if (userRepository.existsByEmailIgnoreCaseAndIdNot(user.getEmail(), user.getId())) {
                 log.warn("Пользователь с email {} уже существует", user.getEmail());
                 throw new ValidationException("Пользователь с email " + user.getEmail() + " уже существует");
             }
@@ -101,9 +128,11 @@ public class UserService {
         if (user.getName() != null && !updatedUser.getName().equals(user.getName())) {
             log.debug("Обновление имени пользователя с {} на {}", updatedUser.getName(), user.getName());
             updatedUser.setName(user.getName());
+            versions.userRenamed(updatedUser.getId());
         }
 
         userRepository.save(updatedUser);
+        versions.userChanged(updatedUser.getId());
         log.info("Пользователь с ID {} успешно обновлен", user.getId());
 
         return ResponseEntity.ok().body(userMapper.toUserDto(updatedUser));
@@ -118,7 +147,7 @@ public class UserService {
             throw new NotFoundException("ID не был введен");
         }
 
-        User user = userRepository.findById(userId)
+        User user = userRepository.findWithFriendsById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с таким ID не найден" + userId));
         User friend = userRepository.findById(friendId)
                 .orElseThrow(() -> new NotFoundException("Друг с таким ID не найден" + friendId));
@@ -136,6 +165,7 @@ public class UserService {
         user.getFriends().add(friend);
 
         userRepository.save(user);
+        versions.userChanged(userId);
         eventService.createEvent(userId, EventType.FRIEND, EventOperation.ADD, friendId);
 
         log.info("Пользователь {} успешно добавлен в друзья к {}", friendId, userId);
@@ -146,36 +176,41 @@ public class UserService {
     public ResponseEntity<Void> deleteFriend(Long userId, Long friendId) {
         log.debug("Попытка удаления друга {} у пользователя {}", friendId, userId);
 
-        User user = userRepository.findById(userId)
+        User user = userRepository.findWithFriendsById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с ID %s не найден".formatted(userId)));
         User friend = userRepository.findById(friendId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с ID %s не найден".formatted(friendId)));
 
         user.getFriends().remove(friend);
+        versions.userChanged(userId);
         eventService.createEvent(userId, EventType.FRIEND, EventOperation.REMOVE, friendId);
 
         log.info("Пользователь {} удален из друзей у {}", friendId, userId);
         return ResponseEntity.ok().build();
     }
 
+    @Transactional
     public ResponseEntity<List<UserResponseDto>> getCommonFriends(Long user1Id, Long user2Id) {
-        log.debug("Поиск общих друзей пользователей {} и {}", user1Id, user2Id);
+        return getCommonFriends(user1Id, user2Id, null);
+    }
 
-        Set<User> user1Friends = userRepository.findById(user1Id)
-                .orElseThrow(() -> new NotFoundException("Пользователь " + user1Id + " не найден"))
-                .getFriends();
-        Set<User> user2Friends = userRepository.findById(user2Id)
-                .orElseThrow(() -> new NotFoundException("Пользователь " + user2Id + " не найден"))
-                .getFriends();
+    @Transactional
+    public ResponseEntity<List<UserResponseDto>> getCommonFriends(Long user1Id, Long user2Id, Integer limit) {
+        log.debug("Поиск общих друзей пользователей {} и {}", user1Id, user2Id);
 
-        List<User> commonFriends = user1Friends.stream()
-                .filter(user2Friends::contains)
-                .toList();
+        for (Long id : List.of(user1Id, user2Id)) {
+            if (!userRepository.existsById(id)) {
+                throw new NotFoundException("Пользователь " + id + " не найден");
+            }
+        }
+        List<User> commonFriends = userRepository.findCommonFriends(user1Id, user2Id,
+                KeysetPage.limitOrUnlimited(limit));
 
         log.info("Найдено {} общих друзей между {} и {}", commonFriends.size(), user1Id, user2Id);
         return ResponseEntity.ok(userMapper.toUserDtoList(commonFriends));
     }
 
+    @Transactional
     public ResponseEntity<List<UserResponseDto>> getFriends(Long userId) {
         log.debug("Запрос друзей пользователя {}", userId);
 
@@ -183,7 +218,7 @@ public class UserService {
             throw new NotFoundException("Некорректный ID пользователя");
         }
 
-        User user = userRepository.findById(userId)
+        User user = userRepository.findWithFriendsById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь " + userId + " не найден"));
 
         List<User> friends = new ArrayList<>(
@@ -195,8 +230,15 @@ public class UserService {
         return ResponseEntity.ok(userMapper.toUserDtoList(friends));
     }
 
+    @Transactional
+    public ResponseEntity<UserResponseDto> getUserById(Long userId, String ifNoneMatch) {
+        long version = versions.user(userId)
+                .orElseThrow(() -> new NotFoundException("Пользователь с ID %s не найден".formatted(userId)));
+        return versions.conditional(userId, version, ifNoneMatch, () -> getUserById(userId));
+    }
+
     public ResponseEntity<UserResponseDto> getUserById(Long userId) {
-        User user = userRepository.findById(userId)
+        User user = userRepository.findWithFriendsById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с ID %s не найден".formatted(userId)));
 
         log.info("Найден пользователь: ID={}, Логин={}", userId, user.getLogin());
@@ -208,6 +250,9 @@ public class UserService {
     public void deleteAllUsers() {
         log.warn("Выполняется запрос на удаление всех пользователей");
         userRepository.deleteAll();
+        cacheEvictor.evictReviews();
+        recommendationEngine.clear();
+        friendTimeline.clear();
         log.info("Все пользователи удалены");
     }
 
@@ -221,6 +266,8 @@ public class UserService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с ID %s не найден".formatted(userId)));
 
+        versions.userDeleted(userId);
+
         // Удалить связи, где пользователь добавлен в друзья другими
         Set<User> usersWhoAdded = userRepository.findUsersWhoAddedAsFriend(userId);
         usersWhoAdded.forEach(u -> u.getFriends().remove(user));
@@ -229,20 +276,58 @@ public class UserService {
         // Удалить дружеские связи пользователя
         user.getFriends().clear();
 
-        // Удалить лайки
-        List<Film> likedFilmsCopy = new ArrayList<>(user.getLikedFilms());
-        likedFilmsCopy.forEach(film -> {
-            film.getUsersWithLikes().remove(user);
+        // Голоса за отзывы удалит каскад, полезность отзывов пересчитывается заранее
+        reviewRepository.revokeVotesOfUser(userId);
+
+        // Удалить лайки и уменьшить счётчики лайкнутых фильмов
+        List<Long> likedFilmIds = filmRepository.findLikedFilmIds(userId);
+        filmRepository.decrementLikesCountForUser(userId);
+        filmRepository.deleteLikesByUserId(userId);
+        likedFilmIds.forEach(filmId -> {
+            cacheEvictor.evictFilm(filmId);
+            popularityIndex.changeLikes(filmId, -1);
         });
-        filmRepository.saveAll(likedFilmsCopy);
+        recommendationEngine.removeUser(userId);
+        friendTimeline.removeUser(userId);
 
         // Удалить самого пользователя
         userRepository.delete(user);
+        // Отзывы пользователя удаляются каскадом в базе
+        cacheEvictor.evictReviews();
     }
 
     public ResponseEntity<List<EventDto>> getUserEvents(Long userId) {
         log.debug("Выполняется запрос на получение событий пользователя {}", userId);
-        getUserById(userId);
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Пользователь с ID %s не найден".formatted(userId));
+        }
         return ResponseEntity.ok(eventService.getEvents(userId));
     }
+
+    public ResponseEntity<List<EventDto>> getUserEvents(Long userId, Long after, Integer limit, String order) {
+        if (after == null && limit == null && order == null) {
+            return getUserEvents(userId);
+        }
+        boolean newestFirst;
+        if (order == null || "asc".equalsIgnoreCase(order)) {
+            newestFirst = false;
+        } else if ("desc".equalsIgnoreCase(order)) {
+            newestFirst = true;
+        } else {
+            throw new ValidationException("Неверный параметр сортировки: " + order);
+        }
+        log.debug("Запрос страницы событий пользователя {} после ID={}, limit={}, order={}", userId, after, limit, order);
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Пользователь с ID %s не найден".formatted(userId));
+        }
+        return ResponseEntity.ok(eventService.getEvents(userId, after, limit, newestFirst));
+    }
+
+    public ResponseEntity<List<EventDto>> getFriendsEvents(Long userId, Integer limit) {
+        log.debug("Выполняется запрос ленты друзей пользователя {}", userId);
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Пользователь с ID %s не найден".formatted(userId));
+        }
+        return ResponseEntity.ok(eventService.getFriendsEvents(userId, limit));
+    }
 }
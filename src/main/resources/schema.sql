@@ -12,6 +12,7 @@ DROP TABLE IF EXISTS mpa_rating CASCADE;
 DROP TABLE IF EXISTS film_directors CASCADE;
 DROP TABLE IF EXISTS directors CASCADE;
 DROP TABLE IF EXISTS events CASCADE;
+DROP TABLE IF EXISTS friend_timeline CASCADE;
 
 CREATE TABLE IF NOT EXISTS mpa_rating
     (id BIGINT PRIMARY KEY,
@@ -31,8 +32,13 @@ CREATE TABLE IF NOT EXISTS users
     login VARCHAR(50) NOT NULL,
     email VARCHAR(100) NOT NULL,
     birthday DATE NOT NULL,
+    email_key VARCHAR(100) GENERATED ALWAYS AS (LOWER(email)),
+    login_key VARCHAR(50) GENERATED ALWAYS AS (LOWER(login)),
+    version BIGINT NOT NULL DEFAULT 0,
     CONSTRAINT valid_email CHECK (email LIKE '%@%.%'),
-    CONSTRAINT future_birthday CHECK (birthday <= CURRENT_DATE));
+    CONSTRAINT future_birthday CHECK (birthday <= CURRENT_DATE),
+    CONSTRAINT uq_users_email_key UNIQUE (email_key),
+    CONSTRAINT uq_users_login_key UNIQUE (login_key));
 
 CREATE TABLE IF NOT EXISTS user_friends
     (user_id BIGINT,
@@ -41,6 +47,8 @@ CREATE TABLE IF NOT EXISTS user_friends
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
     FOREIGN KEY (friend_id) REFERENCES users(id) ON DELETE CASCADE);
 
+CREATE INDEX IF NOT EXISTS idx_user_friends_friend_user ON user_friends (friend_id, user_id);
+
 CREATE TABLE IF NOT EXISTS films
    (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     name VARCHAR(200) NOT NULL,
@@ -48,8 +56,11 @@ CREATE TABLE IF NOT EXISTS films
     release_date DATE NOT NULL,
     duration BIGINT NOT NULL,
     rating_id BIGINT,
+    likes_count INT NOT NULL DEFAULT 0,
+    version BIGINT NOT NULL DEFAULT 0,
     CONSTRAINT positive_duration CHECK (duration > 0),
     CONSTRAINT valid_release_date CHECK (release_date >= '1895-12-28'),
+    CONSTRAINT non_negative_likes_count CHECK (likes_count >= 0),
     FOREIGN KEY (rating_id) REFERENCES mpa_rating(id));
 
 CREATE TABLE IF NOT EXISTS film_genres
@@ -73,15 +84,22 @@ CREATE TABLE IF NOT EXISTS likes
     FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE);
 
+CREATE INDEX IF NOT EXISTS idx_likes_user_film ON likes (user_id, film_id);
+
 CREATE TABLE IF NOT EXISTS reviews
    (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
    content TEXT NOT NULL,
    is_positive BOOLEAN NOT NULL,
    film_id BIGINT NOT NULL,
    user_id BIGINT NOT NULL,
+   useful INT NOT NULL DEFAULT 0,
+   version BIGINT NOT NULL DEFAULT 0,
    FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE);
 
+CREATE INDEX IF NOT EXISTS idx_reviews_film_useful ON reviews (film_id, useful DESC, id);
+CREATE INDEX IF NOT EXISTS idx_reviews_useful ON reviews (useful DESC, id);
+
 CREATE TABLE IF NOT EXISTS review_rating
    (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
    review_id BIGINT NOT NULL,
@@ -110,4 +128,13 @@ CREATE TABLE IF NOT EXISTS events
     timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     CONSTRAINT check_event_type CHECK (event_type IN ('FRIEND', 'LIKE', 'REVIEW')),
     CONSTRAINT check_operation CHECK (operation IN ('ADD', 'REMOVE', 'UPDATE')),
-    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE);
\ No newline at end of file
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE);
+
+CREATE INDEX IF NOT EXISTS idx_events_user_event ON events (user_id, event_id);
+
+CREATE TABLE IF NOT EXISTS friend_timeline
+    (owner_id BIGINT NOT NULL,
+    event_id BIGINT NOT NULL,
+    PRIMARY KEY (owner_id, event_id),
+    FOREIGN KEY (owner_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (event_id) REFERENCES events(event_id) ON DELETE CASCADE);
@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.dto.ChangeUserDto;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Очередь на одно событие без фонового сброса: второе событие не помещается в очередь.
+ */
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@TestPropertySource(properties = {
+        "filmorate.events.mode=ASYNC",
+        "filmorate.events.queue-capacity=1",
+        "filmorate.events.offer-timeout-ms=10",
+        "filmorate.events.flush-interval-ms=3600000"
+})
+class EventQueueOverflowTest extends FilmorateApplicationTests {
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testOverflowDropsEventWithoutFailingRequest() throws Exception {
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "name1", LocalDate.of(2000, 1, 1)));
+        userService.createUser(new ChangeUserDto("email2@yandex.ru", "user2", "name2", LocalDate.of(2000, 2, 2)));
+        userService.createUser(new ChangeUserDto("email3@yandex.ru", "user3", "name3", LocalDate.of(2000, 3, 3)));
+
+        mockMvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        // Изменение уже зафиксировано, поэтому переполнение очереди не превращает ответ в ошибку
+        mockMvc.perform(put("/users/1/friends/3")).andExpect(status().isOk());
+
+        assertEquals(1, meterRegistry.get("filmorate.events.dropped").counter().count());
+        mockMvc.perform(get("/users/1/friends"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(get("/users/1/feed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].entityId").value(2));
+    }
+}
@@ -1,26 +1,39 @@
 package ru.yandex.practicum.filmorate;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.repository.*;
 import ru.yandex.practicum.filmorate.dto.*;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.ReferenceDataCache;
 
 import java.time.LocalDate;
 import java.util.*;
 
 import static com.jayway.jsonpath.internal.path.PathCompiler.fail;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -46,6 +59,21 @@ class FilmTest extends FilmorateApplicationTests {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ReferenceDataCache referenceData;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
     @BeforeEach
     void beforeEach() {
         filmService.deleteAllFilms();
@@ -315,9 +343,13 @@ class FilmTest extends FilmorateApplicationTests {
         Film film1 = new Film();
         User user1 = new User();
         user1.setLogin("example-user");
+        user1.setName("example-user");
+        user1.setBirthday(LocalDate.of(2000, 1, 1));
         user1.setEmail("user@example.com");
         User user2 = new User();
         user2.setLogin("example2-user");
+        user2.setName("example2-user");
+        user2.setBirthday(LocalDate.of(2000, 1, 1));
         user2.setEmail("user2@example.com");
         userRepository.save(user1);
         userRepository.save(user2);
@@ -327,6 +359,7 @@ class FilmTest extends FilmorateApplicationTests {
         film1.setDuration(30L);
         film1.setDirectors(List.of(director1));
         film1.setUsersWithLikes(List.of(user1));
+        film1.setLikesCount(1);
         filmRepository.save(film1);
 
         Film film2 = new Film();
@@ -336,6 +369,7 @@ class FilmTest extends FilmorateApplicationTests {
         film2.setDuration(40L);
         film2.setDirectors(List.of(director1));
         film2.setUsersWithLikes(Arrays.asList(user1, user2));
+        film2.setLikesCount(2);
         filmRepository.save(film2);
 
         ResponseEntity<List<FilmResponseDto>> sortedFilmsYear = filmService.findFilmsByDirectorSorted(1L,
@@ -427,4 +461,352 @@ class FilmTest extends FilmorateApplicationTests {
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath("$").isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSearchFilmsByTitleAndDirectorWithRelevance() throws Exception {
+        mpaRepository.save(new Mpa(1L, "G"));
+        genreRepository.save(new Genre(1L, "Комедия"));
+        directorRepository.save(new Director(1L, "Гайдай"));
+        for (String name : List.of("Операция Ы", "Кавказская пленница", "Бриллиантовая рука")) {
+            filmService.addFilm(new ChangeFilmDto(name, "Description", LocalDate.of(1966, 7, 27), 90L,
+                    new MpaDto(1L, "G"), Collections.emptyList(), List.of(new GenreDto(1L, "Комедия"))));
+        }
+        filmService.addFilm(new ChangeFilmDto("Иван Васильевич меняет профессию", "Description",
+                LocalDate.of(1973, 9, 17), 88L, new MpaDto(1L, "G"),
+                List.of(new DirectorDto(1L, "Гайдай")), List.of(new GenreDto(1L, "Комедия"))));
+
+        mockMvc.perform(get("/films/search").param("query", "ПЛЕН"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(2));
+        mockMvc.perform(get("/films/search").param("query", "гай").param("by", "title,director"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(4));
+        mockMvc.perform(get("/films/search").param("query", "ка"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].id").value(2));
+        mockMvc.perform(get("/films/search").param("query", "ка").param("sortBy", "relevance"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].id").value(3));
+        mockMvc.perform(get("/films/search").param("query", "ка").param("sortBy", "relevance")
+                        .param("offset", "1").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(3));
+        mockMvc.perform(get("/films/search").param("query", "ра").param("by", "genre"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetAllFilmsRunsConstantNumberOfStatements() throws Exception {
+        mpaRepository.save(new Mpa(1L, "G"));
+        genreRepository.save(new Genre(1L, "Комедия"));
+        directorRepository.save(new Director(1L, "Гайдай"));
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "Ян",
+                LocalDate.of(1996, 12, 5)));
+
+        addFilmWithReview(1L);
+        long statementsForOneFilm = countStatements(() -> mockMvc.perform(get("/films"))
+                .andExpect(status().isOk()));
+
+        for (long filmId = 2; filmId <= 5; filmId++) {
+            addFilmWithReview(filmId);
+        }
+        reviewService.addLikeOnReview(5L, 1L);
+        long statementsForFiveFilms = countStatements(() -> mockMvc.perform(get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(5))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[4].reviews[0].useful").value(1)));
+
+        assertEquals(statementsForOneFilm, statementsForFiveFilms);
+    }
+
+    @Test
+    void testGetCommonFilmsOrderedByLikes() throws Exception {
+        mpaRepository.save(new Mpa(1L, "G"));
+        genreRepository.save(new Genre(1L, "Комедия"));
+        directorRepository.save(new Director(1L, "Гайдай"));
+        for (int i = 1; i <= 3; i++) {
+            userService.createUser(new ChangeUserDto("email%d@yandex.ru".formatted(i), "user" + i, "Ян",
+                    LocalDate.of(1996, 12, 5)));
+            addFilmWithReview(i);
+        }
+        filmService.addLike(1L, 1L);
+        filmService.addLike(2L, 1L);
+        filmService.addLike(3L, 1L);
+        filmService.addLike(1L, 2L);
+        filmService.addLike(3L, 2L);
+        filmService.addLike(3L, 3L);
+
+        mockMvc.perform(get("/films/common").param("userId", "1").param("friendId", "2"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].id").value(1));
+        mockMvc.perform(get("/films/common").param("userId", "1").param("friendId", "2").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(3));
+    }
+
+    @Test
+    void testGetFilmByIdDoesNotLoadUsers() throws Exception {
+        mpaRepository.save(new Mpa(1L, "G"));
+        genreRepository.save(new Genre(1L, "Комедия"));
+        directorRepository.save(new Director(1L, "Гайдай"));
+        for (int i = 1; i <= 3; i++) {
+            userService.createUser(new ChangeUserDto("email%d@yandex.ru".formatted(i), "user" + i, "Ян",
+                    LocalDate.of(1996, 12, 5)));
+        }
+        userService.addFriend(1L, 2L);
+        userService.addFriend(2L, 3L);
+        userService.addFriend(3L, 1L);
+        addFilmWithReview(1L);
+        filmService.addLike(1L, 1L);
+        filmService.addLike(1L, 2L);
+        reviewService.addLikeOnReview(1L, 3L);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.likes").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.reviews[0].useful").value(1));
+
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getCollectionStatistics(User.class.getName() + ".friends").getLoadCount());
+        // Фильм, рейтинг MPA, жанр и режиссёр
+        assertTrue(statistics.getEntityLoadCount() <= 4, "Загружено сущностей: " + statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void testAddFilmReadsReferenceDataFromCache() {
+        mpaRepository.save(new Mpa(1L, "G"));
+        genreRepository.save(new Genre(1L, "Комедия"));
+        directorRepository.save(new Director(1L, "Гайдай"));
+        ChangeFilmDto film = new ChangeFilmDto("Name 1", "Description 1",
+                LocalDate.of(2000, 7, 27), 120L,
+                new MpaDto(1L, "G"), List.of(new DirectorDto(1L, "Гайдай")), List.of(new GenreDto(1L, "Комедия")));
+        filmService.addFilm(film);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        film.setName("Name 2");
+        FilmResponseDto created = filmService.addFilm(film).getBody();
+
+        assertNotNull(created);
+        assertEquals("G", created.getMpa().getName());
+        assertEquals("Гайдай", created.getDirectors().get(0).getName());
+        assertEquals(0, statistics.getEntityStatistics(Mpa.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Genre.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Director.class.getName()).getLoadCount());
+    }
+
+    @Test
+    void testAddFilmValidatesGenresAddedAtRuntime() throws Exception {
+        // Жанры не создаются через API, новая строка добавляется в справочник напрямую
+        jdbcTemplate.update("INSERT INTO genres (id, name) VALUES (7, 'Нуар')");
+        String film = "{\"name\":\"Name 1\",\"description\":\"Description 1\",\"releaseDate\":\"2000-07-27\","
+                + "\"duration\":120,\"mpa\":{\"id\":1},\"genres\":[{\"id\":%d}]}";
+
+        mockMvc.perform(post("/films").contentType(APPLICATION_JSON).content(film.formatted(7)))
+                .andExpect(status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.genres[0].name").value("Нуар"));
+        mockMvc.perform(post("/films").contentType(APPLICATION_JSON).content(film.formatted(99)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/films/popular?genreId=99"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testReferenceDataCacheKeepsDetachedCopies() {
+        directorRepository.save(new Director(1L, "Гайдай"));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+            Director loaded = referenceData.findDirector(1L).orElseThrow();
+            Director cached = referenceData.findDirector(1L).orElseThrow();
+            assertTrue(entityManager.contains(loaded));
+            assertFalse(entityManager.contains(cached));
+            assertEquals("Гайдай", cached.getName());
+        });
+    }
+
+    @Test
+    void testGetFilmByIdReadsSecondLevelCache() throws Exception {
+        directorRepository.save(new Director(1L, "Гайдай"));
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "Ян", LocalDate.of(1996, 12, 5)));
+        addFilmWithReview(1L);
+        mockMvc.perform(get("/films/1")).andExpect(status().isOk());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.directors[0].name").value("Гайдай"));
+
+        assertEquals(0, statistics.getEntityStatistics(Film.class.getName()).getLoadCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+
+        // Связь с режиссёром удаляется каскадом в базе и не должна остаться в кэше
+        mockMvc.perform(delete("/directors/1")).andExpect(status().isNoContent());
+        mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.directors").isEmpty());
+    }
+
+    @Test
+    void testLikeEvictsOnlyLikedFilmFromSecondLevelCache() throws Exception {
+        directorRepository.save(new Director(1L, "Гайдай"));
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "Ян", LocalDate.of(1996, 12, 5)));
+        addFilmWithReview(1L);
+        addFilmWithReview(2L);
+        mockMvc.perform(get("/films/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/films/2")).andExpect(status().isOk());
+        mockMvc.perform(get("/reviews/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/reviews/2")).andExpect(status().isOk());
+        assertTrue(entityManagerFactory.getCache().contains(Review.class, 2L));
+
+        filmService.addLike(1L, 1L);
+        reviewService.addLikeOnReview(1L, 1L);
+
+        jakarta.persistence.Cache cache = entityManagerFactory.getCache();
+        assertFalse(cache.contains(Film.class, 1L));
+        assertTrue(cache.contains(Film.class, 2L));
+        assertFalse(cache.contains(Review.class, 1L));
+        assertTrue(cache.contains(Review.class, 2L));
+        mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.likes").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.reviews[0].useful").value(1));
+    }
+
+    @Test
+    void testGetFilmByIdAnswersNotModifiedUntilFilmChanges() throws Exception {
+        directorRepository.save(new Director(1L, "Гайдай"));
+        for (int i = 1; i <= 2; i++) {
+            userService.createUser(new ChangeUserDto("email%d@yandex.ru".formatted(i), "user" + i, "Ян",
+                    LocalDate.of(1996, 12, 5)));
+        }
+        addFilmWithReview(1L);
+        String eTag = mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+        assertEquals(0, statistics.getEntityFetchCount() + statistics.getEntityLoadCount());
+
+        // Голос за отзыв меняет ответ фильма, в который входит отзыв
+        reviewService.addLikeOnReview(1L, 2L);
+        String changed = mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.reviews[0].useful").value(1))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(eTag, changed);
+
+        filmService.addLike(1L, 2L);
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, changed))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.likes").value(1));
+    }
+
+    @Test
+    void testApplyLikesInBatchReportsEachOperation() throws Exception {
+        directorRepository.save(new Director(1L, "Гайдай"));
+        for (int i = 1; i <= 2; i++) {
+            userService.createUser(new ChangeUserDto("email%d@yandex.ru".formatted(i), "user" + i, "Ян",
+                    LocalDate.of(1996, 12, 5)));
+            addFilmWithReview(i);
+        }
+        mockMvc.perform(get("/films/1")).andExpect(status().isOk());
+
+        mockMvc.perform(post("/films/likes")
+                        .contentType(APPLICATION_JSON)
+                        .content("[{\"filmId\":1,\"userId\":1,\"op\":\"ADD\"},"
+                                + "{\"filmId\":1,\"userId\":2,\"op\":\"ADD\"},"
+                                + "{\"filmId\":2,\"userId\":1,\"op\":\"ADD\"},"
+                                + "{\"filmId\":2,\"userId\":2,\"op\":\"REMOVE\"},"
+                                + "{\"filmId\":9,\"userId\":1,\"op\":\"ADD\"},"
+                                + "{\"filmId\":1,\"userId\":2,\"op\":\"REMOVE\"},"
+                                + "{\"filmId\":1,\"userId\":1,\"op\":\"ADD\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].status").value(
+                        contains(200, 200, 200, 400, 404, 200, 200)));
+
+        mockMvc.perform(get("/films/1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.likes").value(1));
+        mockMvc.perform(get("/films/2"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.likes").value(1));
+        mockMvc.perform(delete("/films/2/like/1")).andExpect(status().isOk());
+        mockMvc.perform(delete("/films/1/like/2")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testRequestMetricsAreTaggedByEndpoint() throws Exception {
+        directorRepository.save(new Director(1L, "Гайдай"));
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "Ян", LocalDate.of(1996, 12, 5)));
+        addFilmWithReview(1L);
+        mockMvc.perform(get("/films/1")).andExpect(status().isOk());
+
+        DistributionSummary statements = meterRegistry.get("filmorate.request.sql.statements")
+                .tag("endpoint", "GET /films/{filmId}").summary();
+        assertEquals(1, statements.count());
+        assertTrue(statements.totalAmount() > 0);
+        assertTrue(meterRegistry.get("filmorate.request.loaded.entities")
+                .tag("endpoint", "GET /films/{filmId}").summary().totalAmount() > 0);
+        assertEquals(1, meterRegistry.get("filmorate.service")
+                .tags("class", "FilmService", "method", "getFilmById", "endpoint", "GET /films/{filmId}")
+                .timer().count());
+        // Вызовы вне HTTP-запроса помечаются точкой входа none
+        assertEquals(1, meterRegistry.get("filmorate.service")
+                .tags("class", "FilmService", "method", "addFilm", "endpoint", "none")
+                .timer().count());
+    }
+
+    @Test
+    @SqlBudget(statements = 5, repeats = 1)
+    void testPopularFilmsStayWithinQueryBudget() throws Exception {
+        mpaRepository.save(new Mpa(1L, "G"));
+        genreRepository.save(new Genre(1L, "Комедия"));
+        directorRepository.save(new Director(1L, "Гайдай"));
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "Ян", LocalDate.of(1996, 12, 5)));
+        for (long filmId = 1; filmId <= 5; filmId++) {
+            addFilmWithReview(filmId);
+            filmService.addLike(filmId, 1L);
+        }
+
+        mockMvc.perform(get("/films/popular?count=5"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(5))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].reviews.length()").value(1));
+    }
+
+    private void addFilmWithReview(long filmId) {
+        filmService.addFilm(new ChangeFilmDto("Name " + filmId, "Description " + filmId,
+                LocalDate.of(2000, 7, 27), 120L,
+                new MpaDto(1L, "G"), List.of(new DirectorDto(1L, "Гайдай")), List.of(new GenreDto(1L, "Комедия"))));
+        reviewService.addReview(new ChangeReviewDto("Review " + filmId, true, 1L, filmId));
+    }
+
+    private long countStatements(ThrowingRunnable action) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
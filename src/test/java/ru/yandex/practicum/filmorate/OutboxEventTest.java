@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dto.ChangeUserDto;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.service.EventService;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Режим OUTBOX: событие пишется в транзакции изменения и сохраняется тогда и только тогда,
+ * когда она фиксируется.
+ */
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@TestPropertySource(properties = "filmorate.events.mode=OUTBOX")
+class OutboxEventTest extends FilmorateApplicationTests {
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    EventService eventService;
+
+    @BeforeEach
+    void beforeEach() {
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "name1", LocalDate.of(2000, 1, 1)));
+        userService.createUser(new ChangeUserDto("email2@yandex.ru", "user2", "name2", LocalDate.of(2000, 2, 2)));
+    }
+
+    @Test
+    void testEventIsStoredWithCommittedChange() throws Exception {
+        userService.addFriend(1L, 2L);
+
+        mockMvc.perform(get("/users/1/feed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].eventType").value("FRIEND"))
+                .andExpect(jsonPath("$[0].entityId").value(2));
+    }
+
+    @Test
+    void testEventIsNotStoredAfterRollback() throws Exception {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userService.addFriend(1L, 2L);
+            status.setRollbackOnly();
+        });
+
+        mockMvc.perform(get("/users/1/feed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void testRejectedEventRollsBackChange() throws Exception {
+        assertThrows(DataIntegrityViolationException.class, () ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    userService.addFriend(1L, 2L);
+                    eventService.createEvent(999L, EventType.FRIEND, EventOperation.ADD, 1L);
+                }));
+
+        mockMvc.perform(get("/users/1/friends"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/users/1/feed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+}
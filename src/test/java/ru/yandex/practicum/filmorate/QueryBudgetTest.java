@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.dto.*;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.monitoring.QueryBudgetGuard;
+import ru.yandex.practicum.filmorate.repository.DirectorRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Бюджет отдельной точки входа занижен так, чтобы запрос к ней превышал его: переопределение живёт только
+ * в контексте этого класса и не задевает остальные тесты.
+ */
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@TestPropertySource(properties = "filmorate.sql-budget.endpoints[GET\\ /films/director/{directorId}].statements=1")
+class QueryBudgetTest extends FilmorateApplicationTests {
+
+    @Autowired
+    DirectorRepository directorRepository;
+
+    @Autowired
+    QueryBudgetGuard queryBudgetGuard;
+
+    @Test
+    void testEndpointQueryBudgetOverridesDefault() throws Exception {
+        directorRepository.save(new Director(1L, "Гайдай"));
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "Ян", LocalDate.of(1996, 12, 5)));
+        filmService.addFilm(new ChangeFilmDto("Name 1", "Description 1", LocalDate.of(2000, 7, 27), 120L,
+                new MpaDto(1L, "G"), List.of(new DirectorDto(1L, "Гайдай")), List.of(new GenreDto(1L, "Комедия"))));
+
+        assertEquals(1, queryBudgetGuard.budget("GET /films/director/{directorId}").statements());
+        assertEquals(queryBudgetGuard.budget("GET /films/{filmId}").repeats(),
+                queryBudgetGuard.budget("GET /films/director/{directorId}").repeats());
+
+        Exception exception = assertThrows(Exception.class, () -> mockMvc.perform(get("/films/director/1")));
+        assertTrue(exception.getMessage().contains("GET /films/director/{directorId} превысил бюджет"),
+                exception.getMessage());
+        // Остальные точки входа проверяются бюджетом по умолчанию
+        mockMvc.perform(get("/films/1")).andExpect(status().isOk());
+    }
+}
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.repository.GenreRepository;
 import ru.yandex.practicum.filmorate.repository.MpaRepository;
@@ -19,6 +20,7 @@ import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
@@ -160,6 +162,60 @@ class ReviewTest extends FilmorateApplicationTests {
 
     }
 
+    @Test
+    void testVotesUpdateUsefulCounter() throws Exception {
+        userService.createUser(new ChangeUserDto("email2@yandex.ru", "user2", "Ян2",
+                LocalDate.of(1996, 12, 5)));
+        reviewService.addReview(new ChangeReviewDto("This film is good.", true, 1L, 1L));
+        reviewService.addReview(new ChangeReviewDto("This film is soo bad.", false, 2L, 1L));
+
+        reviewService.addLikeOnReview(1L, 1L);
+        reviewService.addLikeOnReview(1L, 1L);
+        reviewService.addLikeOnReview(2L, 1L);
+        reviewService.addLikeOnReview(1L, 2L);
+        reviewService.addDislikeOnReview(1L, 2L);
+
+        mockMvc.perform(get("/reviews/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value(0));
+        mockMvc.perform(get("/reviews/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value(1));
+
+        reviewService.deleteDislikeFromReview(1L, 2L);
+        mockMvc.perform(get("/reviews/1"))
+                .andExpect(jsonPath("$.useful").value(1));
+        mockMvc.perform(delete("/reviews/1/dislike/2"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetReviewsOrderedByUsefulWithKeysetPages() throws Exception {
+        userService.createUser(new ChangeUserDto("email2@yandex.ru", "user2", "Ян2",
+                LocalDate.of(1996, 12, 5)));
+        reviewService.addReview(new ChangeReviewDto("Review 1", true, 1L, 1L));
+        reviewService.addReview(new ChangeReviewDto("Review 2", true, 2L, 1L));
+        reviewService.addReview(new ChangeReviewDto("Review 3", false, 2L, 1L));
+        reviewService.addLikeOnReview(2L, 1L);
+        reviewService.addDislikeOnReview(3L, 1L);
+
+        mockMvc.perform(get("/reviews").param("filmId", "1").param("count", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].reviewId").value(2))
+                .andExpect(jsonPath("$[1].reviewId").value(1));
+        mockMvc.perform(get("/reviews").param("filmId", "1").param("count", "2").param("after", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].reviewId").value(3))
+                .andExpect(jsonPath("$[0].useful").value(-1));
+        mockMvc.perform(get("/reviews").param("count", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].reviewId").value(2));
+        mockMvc.perform(get("/reviews").param("count", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testSuccessUpdateReview() throws Exception {
         ChangeReviewDto review = new ChangeReviewDto("This film is good.", true, 1L, 1L);
@@ -172,4 +228,60 @@ class ReviewTest extends FilmorateApplicationTests {
                 .andExpect(status().isOk())
                 .andExpect(content().json("{\"reviewId\":1,\"content\":\"This film is bad.\",\"isPositive\":false,\"useful\":0,\"userId\":1,\"filmId\":1}"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDeletedUserVotesAreRemovedFromUseful() throws Exception {
+        userService.createUser(new ChangeUserDto("email2@yandex.ru", "user2", "Ян", LocalDate.of(1996, 12, 5)));
+        userService.createUser(new ChangeUserDto("email3@yandex.ru", "user3", "Ян", LocalDate.of(1996, 12, 5)));
+        reviewService.addReview(new ChangeReviewDto("This film is good.", true, 1L, 1L));
+        reviewService.addLikeOnReview(1L, 2L);
+        reviewService.addLikeOnReview(1L, 3L);
+        userService.createUser(new ChangeUserDto("email4@yandex.ru", "user4", "Ян", LocalDate.of(1996, 12, 5)));
+        reviewService.addDislikeOnReview(1L, 4L);
+
+        userService.deleteUser(2L);
+        mockMvc.perform(get("/reviews/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value(0));
+
+        userService.deleteUser(4L);
+        mockMvc.perform(get("/reviews/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value(1));
+    }
+
+    @Test
+    void testDeletingVoterChangesReviewAndFilmETags() throws Exception {
+        userService.createUser(new ChangeUserDto("email2@yandex.ru", "user2", "Ян", LocalDate.of(1996, 12, 5)));
+        reviewService.addReview(new ChangeReviewDto("This film is good.", true, 1L, 1L));
+        reviewService.addLikeOnReview(1L, 2L);
+        String reviewETag = mockMvc.perform(get("/reviews/1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String filmETag = mockMvc.perform(get("/films/1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        userService.deleteUser(2L);
+        mockMvc.perform(get("/reviews/1").header(HttpHeaders.IF_NONE_MATCH, reviewETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value(0));
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, filmETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reviews[0].useful").value(0));
+    }
+
+    @Test
+    @SqlBudget(statements = 2, repeats = 1)
+    void testReviewsToFilmStayWithinQueryBudget() throws Exception {
+        for (long userId = 2; userId <= 5; userId++) {
+            userService.createUser(new ChangeUserDto("email" + userId + "@yandex.ru", "user" + userId, "Ян",
+                    LocalDate.of(1996, 12, 5)));
+            reviewService.addReview(new ChangeReviewDto("Review " + userId, true, userId, 1L));
+            reviewService.addLikeOnReview(userId - 1, 1L);
+        }
+
+        mockMvc.perform(get("/reviews?filmId=1&count=10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].useful").value(1));
+    }
+}
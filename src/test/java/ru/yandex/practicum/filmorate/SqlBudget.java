@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Бюджет обращений к базе для HTTP-запросов тестового метода, выполненных через {@code MockMvc};
+ * подготовка данных прямыми вызовами сервисов не учитывается. Тест падает, если SQL-запросов больше
+ * {@link #statements()} или один и тот же SQL выполнен больше {@link #repeats()} раз.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(SqlBudgetExtension.class)
+@interface SqlBudget {
+    int statements() default Integer.MAX_VALUE;
+
+    int repeats() default Integer.MAX_VALUE;
+}
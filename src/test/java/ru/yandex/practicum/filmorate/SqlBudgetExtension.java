@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import ru.yandex.practicum.filmorate.monitoring.RequestStatistics;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(SqlBudget.class);
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        context.getStore(NAMESPACE).put(context.getUniqueId(), RequestStatistics.begin());
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        RequestStatistics statistics = context.getStore(NAMESPACE)
+                .remove(context.getUniqueId(), RequestStatistics.class);
+        statistics.end();
+        SqlBudget budget = context.getRequiredTestMethod().getAnnotation(SqlBudget.class);
+        assertAll(
+                () -> assertTrue(statistics.getStatements() <= budget.statements(),
+                        () -> "SQL-запросов " + statistics.getStatements() + " при бюджете " + budget.statements()),
+                () -> assertTrue(statistics.getMaxRepeats() <= budget.repeats(),
+                        () -> "Повторы SQL сверх бюджета " + budget.repeats() + ": "
+                                + statistics.getRepeatedStatements(budget.repeats() + 1)));
+    }
+}
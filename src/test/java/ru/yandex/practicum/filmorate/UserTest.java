@@ -3,16 +3,27 @@ package ru.yandex.practicum.filmorate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dataset.DatasetGenerator;
+import ru.yandex.practicum.filmorate.dataset.DatasetSpec;
 import ru.yandex.practicum.filmorate.repository.UserRepository;
 import ru.yandex.practicum.filmorate.dto.*;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EventService;
 
 import java.time.LocalDate;
 import java.util.*;
 
+import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -25,6 +36,15 @@ class UserTest extends FilmorateApplicationTests {
     @Autowired
     protected UserRepository userRepository;
 
+    @Autowired
+    protected PlatformTransactionManager transactionManager;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    protected EventService eventService;
+
     @BeforeEach
     void beforeEach() {
         userService.deleteAllUsers();
@@ -53,6 +73,41 @@ class UserTest extends FilmorateApplicationTests {
                 .andExpect(content().json("{\"id\": 1,\"email\": \"updateemail1@yandex.ru\",\"login\": \"user1\",\"name\": \"Ян\",\"birthday\": \"1996-12-05\"}"));
     }
 
+    @Test
+    void testUpdateUserWithTakenEmailOrLogin() throws Exception {
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "Ян",
+                LocalDate.of(1996, 12, 5)));
+        userService.createUser(new ChangeUserDto("email2@yandex.ru", "user2", "Ян2",
+                LocalDate.of(1996, 12, 5)));
+
+        mockMvc.perform(put("/users")
+                        .contentType(APPLICATION_JSON)
+                        .content("{\"id\": 2,\"email\": \"EMAIL1@yandex.ru\",\"login\": \"user2\",\"birthday\": \"1996-12-05\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(put("/users")
+                        .contentType(APPLICATION_JSON)
+                        .content("{\"id\": 2,\"email\": \"email2@yandex.ru\",\"login\": \"USER1\",\"birthday\": \"1996-12-05\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.description").value("Этот логин уже используется"));
+        mockMvc.perform(put("/users")
+                        .contentType(APPLICATION_JSON)
+                        .content("{\"id\": 2,\"email\": \"Email2@yandex.ru\",\"login\": \"user2\",\"birthday\": \"1996-12-05\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("Email2@yandex.ru"));
+    }
+
+    @Test
+    void testUniqueIndexesIgnoreCase() {
+        userRepository.saveAndFlush(new User("email1@yandex.ru", "user1", "Ян", LocalDate.of(1996, 12, 5)));
+
+        assertThrows(DataIntegrityViolationException.class, () -> userRepository.saveAndFlush(
+                new User("EMAIL1@yandex.ru", "user2", "Ян", LocalDate.of(1996, 12, 5))));
+        assertThrows(DataIntegrityViolationException.class, () -> userRepository.saveAndFlush(
+                new User("email2@yandex.ru", "USER1", "Ян", LocalDate.of(1996, 12, 5))));
+        assertTrue(userRepository.existsByEmailIgnoreCase("Email1@Yandex.ru"));
+        assertTrue(userRepository.existsByLoginIgnoreCase("User1"));
+    }
+
     @Test
     void testSuccessGetUser() throws Exception {
         ChangeUserDto user1 = new ChangeUserDto("email1@yandex.ru", "user1", "Ян",
@@ -114,12 +169,47 @@ class UserTest extends FilmorateApplicationTests {
         userService.addFriend(saved3.getId(), saved2.getId());
 
         userService.getCommonFriends(saved1.getId(), saved3.getId());
+        mockMvc.perform(get("/users/1/friends/common/3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(2));
+        mockMvc.perform(get("/users/1/friends/common/3").param("limit", "0"))
+                .andExpect(status().isBadRequest());
 
         mockMvc.perform(get("/users/1/friends"))
                 .andExpect(status().isOk())
                 .andExpect(content().json("[{\"id\": 2,\"email\": \"email2@yandex.ru\",\"login\": \"user2\",\"name\": \"Ян2\",\"birthday\": \"1996-12-05\"}]"));
     }
 
+    @Test
+    void testGetUsersByKeysetPagesAndStream() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            userService.createUser(new ChangeUserDto("email%d@yandex.ru".formatted(i), "user" + i, "Ян" + i,
+                    LocalDate.of(1996, 12, 5)));
+        }
+
+        mockMvc.perform(get("/users").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+        mockMvc.perform(get("/users").param("after", "2").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(3));
+        mockMvc.perform(get("/users").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        MvcResult streamed = mockMvc.perform(get("/users").param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(streamed))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].login").value("user1"))
+                .andExpect(jsonPath("$[2].id").value(3));
+    }
+
     @Test
     void testInvalidEmail() throws Exception {
         mockMvc.perform(post("/users")
@@ -203,6 +293,16 @@ class UserTest extends FilmorateApplicationTests {
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(content().json("[]"));
+
+        filmService.addLike(2L, 2L);
+        filmService.addLike(1L, 3L);
+        mockMvc.perform(get("/users/2/recommendations"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+        mockMvc.perform(get("/users/3/recommendations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Name 2"))
+                .andExpect(jsonPath("$[1].name").value("Name 3"));
     }
 
     @Test
@@ -305,4 +405,124 @@ class UserTest extends FilmorateApplicationTests {
                 .andExpect(jsonPath("$[5].eventType").value("REVIEW"))
                 .andExpect(jsonPath("$[5].operation").value("REMOVE"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testEventBatchWithRejectedEventIsNotDuplicated() throws Exception {
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "name1",
+                LocalDate.of(2000, 1, 1)));
+
+        // События попадают в очередь после фиксации и сбрасываются одним пакетом
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            eventService.createEvent(1L, EventType.FRIEND, EventOperation.ADD, 2L);
+            eventService.createEvent(999L, EventType.FRIEND, EventOperation.ADD, 1L);
+            eventService.createEvent(1L, EventType.LIKE, EventOperation.ADD, 1L);
+        });
+        mockMvc.perform(get("/users/1/feed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].eventType").value("FRIEND"))
+                .andExpect(jsonPath("$[1].eventType").value("LIKE"));
+    }
+
+    @Test
+    void testEventFeedSkipsRolledBackTransactions() throws Exception {
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "name1",
+                LocalDate.of(2000, 1, 1)));
+        userService.createUser(new ChangeUserDto("email2@yandex.ru", "user2", "name2",
+                LocalDate.of(2000, 2, 2)));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userService.addFriend(1L, 2L);
+            status.setRollbackOnly();
+        });
+        mockMvc.perform(get("/users/1/feed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        userService.addFriend(1L, 2L);
+        mockMvc.perform(get("/users/1/feed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].eventType").value("FRIEND"))
+                .andExpect(jsonPath("$[0].entityId").value(2));
+    }
+
+    @Test
+    void testEventFeedPages() throws Exception {
+        userService.createUser(new ChangeUserDto("email1@yandex.ru", "user1", "name1",
+                LocalDate.of(2000, 1, 1)));
+        userService.createUser(new ChangeUserDto("email2@yandex.ru", "user2", "name2",
+                LocalDate.of(2000, 2, 2)));
+        userService.addFriend(1L, 2L);
+        userService.deleteFriend(1L, 2L);
+        userService.addFriend(1L, 2L);
+
+        mockMvc.perform(get("/users/1/feed?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].eventId", contains(1, 2)));
+        mockMvc.perform(get("/users/1/feed?after=2&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].eventId", contains(3)));
+        mockMvc.perform(get("/users/1/feed?order=desc&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].eventId", contains(3, 2)));
+        mockMvc.perform(get("/users/1/feed?order=desc&after=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].eventId", contains(1)));
+        mockMvc.perform(get("/users/1/feed?order=random"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testFriendsFeedShowsActivityOfFriends() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            userService.createUser(new ChangeUserDto("email" + i + "@yandex.ru", "user" + i, "name" + i,
+                    LocalDate.of(2000, 1, i)));
+        }
+        filmService.addFilm(new ChangeFilmDto("Name 1", "Description 1",
+                LocalDate.of(2000, 7, 27), 120L,
+                new MpaDto(1L, "G"), List.of(), List.of()));
+        userService.addFriend(1L, 2L);
+        userService.addFriend(2L, 3L);
+        filmService.addLike(1L, 2L);
+        filmService.addLike(1L, 3L);
+
+        mockMvc.perform(get("/users/1/feed/friends"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].userId").value(2))
+                .andExpect(jsonPath("$[0].eventType").value("LIKE"))
+                .andExpect(jsonPath("$[1].userId").value(2))
+                .andExpect(jsonPath("$[1].eventType").value("FRIEND"));
+        mockMvc.perform(get("/users/3/feed/friends"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void testDatasetGeneratorLoadsSkewedDataset() throws Exception {
+        DatasetSpec spec = DatasetSpec.builder().users(300).films(200).directors(10).build();
+        DatasetGenerator.Summary summary = new DatasetGenerator(jdbcTemplate).generate(spec);
+
+        assertEquals(300, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class));
+        assertEquals(200, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Long.class));
+        assertEquals(summary.likes(), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Long.class));
+        assertEquals(summary.likes(), jdbcTemplate.queryForObject("SELECT SUM(likes_count) FROM films", Long.class));
+        assertEquals(summary.friendships() + summary.likes() + summary.reviews(),
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Long.class));
+        assertEquals(0, jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM reviews r
+                WHERE r.useful <> (SELECT COUNT(*) FROM review_likes l WHERE l.review_id = r.id)
+                                - (SELECT COUNT(*) FROM review_dislikes d WHERE d.review_id = r.id)""", Long.class));
+        // Лайки сосредоточены на немногих фильмах
+        List<Integer> likes = jdbcTemplate.queryForList(
+                "SELECT likes_count FROM films ORDER BY likes_count DESC", Integer.class);
+        assertTrue(likes.get(0) >= 5 * Math.max(1, likes.get(likes.size() / 2)));
+
+        mockMvc.perform(post("/users")
+                        .contentType(APPLICATION_JSON)
+                        .content("{\"email\": \"new@yandex.ru\",\"login\": \"newuser\",\"birthday\": \"1996-12-05\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(301));
+    }
+}